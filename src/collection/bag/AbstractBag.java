@@ -7,10 +7,15 @@ import java.util.function.Supplier;
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.SortedSet;
 
 /**
  * This class provides a skeletal implementation of the <tt>Bag</tt>
@@ -378,19 +383,80 @@ public abstract class AbstractBag<E> extends AbstractCollection<E> implements Ba
 		return 0;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation picks its plan from the type of the specified
+	 * collection. A bag is compared entry by entry, looking up the count of
+	 * each of its elements in this bag. A set only needs a membership test
+	 * for each of its elements. Any other collection is tallied element by
+	 * element against the counts of this bag, returning <tt>false</tt> as soon
+	 * as an element exceeds its count. If this bag and the specified bag or
+	 * set are sorted with the same comparator, and walking both side by side
+	 * is cheaper than the lookups, they are merged in a single pass instead.</p>
+	 */
 	@Override
 	public boolean containsAll(Collection<?> collection) {
 		requireNonNull(collection, "Invalid null collection.");
 
-		Bag<?> surrogate = (collection instanceof Bag ? (Bag<?>)collection : new HashBag<>(collection));
+		if (collection instanceof Bag) {
+			Bag<?> bag = (Bag<?>)collection;
+			int size = asEntrySet().size();
+			int other = bag.asEntrySet().size();
+
+			if (other > size) {
+				return false;
+			}
+
+			if (isMergeable(bag, size, other)) {
+				return containsAllSorted(sorted(bag));
+			}
+
+			//specified bag is smaller than or equals to this bag
+			for (Entry<?> entry : bag.asEntrySet()) {
+				if (entry.getCount() > count(entry.getElement())) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		if (collection instanceof Set) {
+			int size = asEntrySet().size();
+
+			if (collection.size() > size) {
+				return false;
+			}
+
+			if (isMergeable(collection, size, collection.size())) {
+				return containsAllSorted(sorted(collection));
+			}
+
+			for (Object element : collection) {
+				if (!contains(element)) {
+					return false;
+				}
+			}
 
-		if (surrogate.asEntrySet().size() > asEntrySet().size()) {
+			return true;
+		}
+
+		if (collection.size() > size()) {
 			return false;
 		}
 
-		//specified collection is smaller than or equals to this bag
-		for (Entry<?> entry : surrogate.asEntrySet()) {
-			if (entry.getCount() > count(entry.getElement())) {
+		//tallies the occurrences left for each element, stopping at the first one in excess
+		Map<Object, int[]> remaining = new HashMap<>();
+
+		for (Object element : collection) {
+			int[] count = remaining.get(element);
+
+			if (count == null) {
+				remaining.put(element, count = new int[] {count(element)});
+			}
+
+			if (--count[0] < 0) {
 				return false;
 			}
 		}
@@ -405,10 +471,8 @@ public abstract class AbstractBag<E> extends AbstractCollection<E> implements Ba
 		boolean result = false;
 
 		if (collection instanceof Bag) {
-			for (Entry<? extends E> entry : ((Bag<? extends E>)collection).asEntrySet()) {
-				put(entry.getElement(), entry.getCount());
-				result = true;
-			}
+			result = !collection.isEmpty();
+			((Bag<? extends E>)collection).forEachEntry(this::put);
 		} else {
 			for (E element : collection) {
 				add(element);
@@ -426,16 +490,19 @@ public abstract class AbstractBag<E> extends AbstractCollection<E> implements Ba
 	 * bag so that its count is the <i>asymmetric set difference</i> of
 	 * the two bags.
 	 * 
-     * <p>If the specified collection is not another bag, this implementation
-	 * determines which is the smaller of this bag and the specified collection,
-	 * by invoking the <tt>size</tt> method on each. If this bag has fewer elements,
-	 * then the implementation iterates over this bag, checking each element occurrence
-     * returned by the iterator in turn to see if it is contained in the specified
-	 * collection. If it is so contained, it is removed from this bag with the
-	 * iterator's <tt>remove</tt> method. If the specified collection has fewer
-	 * elements, then the implementation iterates over the specified collection,
-	 * removing from this bag each element occurrence returned by the iterator,
-	 * using this bag's <tt>remove</tt> method.</p>
+	 * <p>If the specified collection is a set, this implementation determines
+	 * which is the smaller of this bag and the specified set, by invoking the
+	 * <tt>asEntrySet</tt> size method of this bag and the <tt>size</tt> method
+	 * of the set. If this bag has fewer elements, and the set tells its
+	 * elements apart as this bag does, then the implementation iterates over
+	 * this <tt>asEntrySet</tt> view, checking each element returned by the
+	 * iterator in turn to see if it is contained in the specified set. If it
+	 * is so contained, one of its occurrences is removed from this bag.
+	 * Otherwise, or if the
+	 * specified collection is neither a set nor a bag, then the implementation
+	 * iterates over the specified collection, removing from this bag each
+	 * element occurrence returned by the iterator, using this bag's
+	 * <tt>remove</tt> method.</p>
 	 * 
 	 * <p>If the specified collection is also a bag, this implementation
 	 * determines which is the smaller of this bag and the specified bag,
@@ -449,7 +516,13 @@ public abstract class AbstractBag<E> extends AbstractCollection<E> implements Ba
 	 * specified bag has fewer elements, then the implementation iterates
 	 * over the specified bag's <tt>asEntrySet</tt> view, removing from
 	 * this bag each element occurrence count returned by the iterator,
-	 * using this bag's <tt>putIf</tt> method with a negative amount.
+	 * using this bag's <tt>put</tt> method with a negative amount.</p>
+	 * 
+	 * <p>If this bag is a sorted bag, the specified collection is a sorted
+	 * bag or a sorted set with the same comparator, and walking both side
+	 * by side is cheaper than looking up each element of the smaller one in
+	 * the bigger one, then the implementation merges the two in a single
+	 * pass instead, removing occurrences from this bag as described above.</p>
 	 * 
 	 * <p>Note that this implementation will throw an
 	 * <tt>UnsupportedOperationException</tt> if the iterator returned by the
@@ -473,17 +546,28 @@ public abstract class AbstractBag<E> extends AbstractCollection<E> implements Ba
 	public boolean removeAll(Collection<?> collection) {
 		requireNonNull(collection, "Invalid null collection.");
 
+		if (collection == this) {
+			boolean result = !isEmpty();
+			clear();
+			return result;
+		}
+
+		collection = unshared(collection);
 		boolean result = false;
 
 		if (collection instanceof Bag) {
-			Bag smaller = (asEntrySet().size() <= ((Bag<?>)collection).asEntrySet().size() ? this : (Bag<?>)collection);
-			Bag bigger = (asEntrySet().size() <= ((Bag<?>)collection).asEntrySet().size() ? (Bag<?>)collection : this);
+			Bag<?> bag = (Bag<?>)collection;
+			int size = asEntrySet().size();
+			int other = bag.asEntrySet().size();
 
-			for (Iterator<Entry<?>> iterator = smaller.asEntrySet().iterator(); iterator.hasNext();) {
-				Entry<?> entry = iterator.next();
+			if (isMergeable(bag, size, other)) {
+				return removeAllSorted(sorted(bag));
+			}
 
-				if (smaller == this) {
-					int count = bigger.count(entry.getElement());
+			if (size <= other) {
+				for (Iterator<Entry<E>> iterator = asEntrySet().iterator(); iterator.hasNext();) {
+					Entry<E> entry = iterator.next();
+					int count = bag.count(entry.getElement());
 
 					if (count > 0) {
 						if (entry.getCount() - count > 0) {
@@ -494,46 +578,104 @@ public abstract class AbstractBag<E> extends AbstractCollection<E> implements Ba
 
 						result = true;
 					}
-				} else {
-					result |= putIf(element -> Objects.equals(element, entry.getElement()), -entry.getCount());
 				}
-			}
-		} else {
-			for (Object element : collection) {
-				result |= remove(element);
-			}
-
-			//TODO fix algorithm
-			/*
-			if (size() <= collection.size()) {
-				for (Iterator<E> iterator = iterator(); iterator.hasNext();) {
-					//correct collection.contains()
-					if (collection.contains(iterator.next())) {
-						iterator.remove();
+			} else {
+				//one lookup per entry of the smaller bag, an absent element is left untouched by put
+				for (Entry<?> entry : bag.asEntrySet()) {
+					if (put((E)entry.getElement(), -entry.getCount()) > 0) {
 						result = true;
 					}
 				}
-			} else {
-				for (Object element : collection) {
-					result |= remove(element);
+			}
+		} else if (collection instanceof Set && isMergeable(collection, asEntrySet().size(), collection.size())) {
+			return removeAllSorted(sorted(collection));
+		} else if (collection instanceof Set && asEntrySet().size() < collection.size() && isEquivalent((Set<?>)collection)) {
+			//membership tests against the set, no copy
+			for (Iterator<Entry<E>> iterator = asEntrySet().iterator(); iterator.hasNext();) {
+				Entry<E> entry = iterator.next();
+
+				if (collection.contains(entry.getElement())) {
+					if (entry.getCount() > 1) {
+						entry.setCount(entry.getCount() - 1);
+					} else {
+						iterator.remove();
+					}
+
+					result = true;
 				}
 			}
-			*/
+		} else {
+			for (Object element : collection) {
+				result |= remove(element);
+			}
 		}
 
 		return result;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation iterates over this bag's <tt>asEntrySet</tt>
+	 * view, lowering the count of each element to its count in the
+	 * specified collection. A bag is queried with its <tt>count</tt> method
+	 * and a set that tells its elements apart as this bag does with its
+	 * <tt>contains</tt> method, so neither is copied. Any other collection
+	 * is first tallied, counting only the elements that this bag contains. If this bag and the specified bag or set are
+	 * sorted with the same comparator, and walking both side by side is
+	 * cheaper than the lookups, they are merged in a single pass instead.</p>
+	 */
 	@Override
 	public boolean retainAll(Collection<?> collection) {
 		requireNonNull(collection, "Invalid null collection.");
 
+		if (collection == this) {
+			return false;
+		}
+
+		collection = unshared(collection);
+
+		if (collection instanceof Bag || collection instanceof Set) {
+			int other = (collection instanceof Bag ? ((Bag<?>)collection).asEntrySet().size() : collection.size());
+
+			if (isMergeable(collection, asEntrySet().size(), other)) {
+				return retainAllSorted(sorted(collection));
+			}
+		}
+
 		boolean result = false;
-		Bag<?> surrogate = (collection instanceof Bag ? (Bag<?>)collection : new HashBag<>(collection));
+		Map<Object, int[]> tally = null;
+
+		//a set compared differently from this bag is tallied as well, by this bag's equality
+		boolean lookup = (collection instanceof Set && isEquivalent((Set<?>)collection));
+
+		if (!(collection instanceof Bag) && !lookup) {
+			//pre-aggregates only the elements this bag contains
+			tally = new HashMap<>();
+
+			for (Object element : collection) {
+				int[] count = tally.get(element);
+
+				if (count != null) {
+					count[0]++;
+				} else if (contains(element)) {
+					tally.put(element, new int[] {1});
+				}
+			}
+		}
 
 		for (Iterator<Entry<E>> iterator = asEntrySet().iterator(); iterator.hasNext();) {
 			Entry<E> entry = iterator.next();
-			int count = surrogate.count(entry.getElement());
+			int count;
+
+			if (collection instanceof Bag) {
+				count = ((Bag<?>)collection).count(entry.getElement());
+			} else if (lookup) {
+				count = (collection.contains(entry.getElement()) ? 1 : 0);
+			} else {
+				int[] tallied = tally.get(entry.getElement());
+				count = (tallied == null ? 0 : tallied[0]);
+			}
 
 			if (count == 0) {
 				iterator.remove();
@@ -547,6 +689,168 @@ public abstract class AbstractBag<E> extends AbstractCollection<E> implements Ba
 		return result;
 	}
 
+	//sorted merge
+	/**
+	 * Returns whether the specified collection is a view over the structure
+	 * backing this bag, or this bag itself, so that modifying this bag while
+	 * reading the collection would fail. This implementation only checks for
+	 * this bag itself.
+	 */
+	boolean shares(Collection<?> collection) {
+		return collection == this;
+	}
+
+	/**
+	 * Returns whether the specified set tells its elements apart as this bag
+	 * does, so its <tt>contains</tt> method may stand in for a lookup in this
+	 * bag. A sorted bag matches a sorted set with the same comparator, and
+	 * any other bag, comparing with <tt>equals</tt>, matches a hash or enum
+	 * set. Other sets, such as a set backed by an identity map, may not.
+	 */
+	boolean isEquivalent(Set<?> set) {
+		if (this instanceof SortedBag) {
+			return set instanceof SortedSet && Objects.equals(((SortedBag<?>)this).comparator(), ((SortedSet<?>)set).comparator());
+		}
+
+		return (set instanceof HashSet || set instanceof EnumSet);
+	}
+
+	/**
+	 * Returns the specified collection, or a copy of it if it shares the
+	 * structure backing this bag, as the bulk operations read it while they
+	 * modify this bag.
+	 */
+	private Collection<?> unshared(Collection<?> collection) {
+		return (collection instanceof SortedBag && shares(collection) ? new TreeBag<>((SortedBag<?>)collection) : collection);
+	}
+
+	/**
+	 * Returns whether this bag and the specified sorted bag or sorted set
+	 * share the same ordering, and walking both side by side (<tt>n + m</tt>)
+	 * is cheaper than looking up the elements of the smaller one in the
+	 * bigger one (<tt>min(n, m) log max(n, m)</tt>).
+	 */
+	private boolean isMergeable(Collection<?> collection, int size, int other) {
+		Comparator<?> comparator;
+
+		if (!(this instanceof SortedBag)) {
+			return false;
+		} else if (collection instanceof SortedBag) {
+			comparator = ((SortedBag<?>)collection).comparator();
+		} else if (collection instanceof SortedSet) {
+			comparator = ((SortedSet<?>)collection).comparator();
+		} else {
+			return false;
+		}
+
+		return Objects.equals(((SortedBag<?>)this).comparator(), comparator)
+			&& Math.min(size, other) * log2(Math.max(size, other)) >= (long)size + other;
+	}
+
+	/**
+	 * Returns the entries of the specified sorted bag, or the elements
+	 * of the specified sorted set as entries with a single occurrence,
+	 * in ascending order.
+	 */
+	private static Iterator<? extends Entry<?>> sorted(Collection<?> collection) {
+		if (collection instanceof SortedBag) {
+			return ((SortedBag<?>)collection).asEntrySet().iterator();
+		}
+
+		Iterator<?> iterator = collection.iterator();
+
+		return new Iterator<Entry<?>>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Entry<?> next() {
+				return new SimpleImmutableEntry<>(iterator.next(), 1);
+			}
+		};
+	}
+
+	private boolean containsAllSorted(Iterator<? extends Entry<?>> others) {
+		Iterator<Entry<E>> iterator = asEntrySet().iterator();
+		Entry<E> entry = (iterator.hasNext() ? iterator.next() : null);
+
+		while (others.hasNext()) {
+			Entry<?> other = others.next();
+			int comparison = -1;
+
+			while (entry != null && (comparison = compare(entry.getElement(), other.getElement())) < 0) {
+				entry = (iterator.hasNext() ? iterator.next() : null);
+			}
+
+			if (entry == null || comparison != 0 || entry.getCount() < other.getCount()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private boolean removeAllSorted(Iterator<? extends Entry<?>> others) {
+		boolean result = false;
+		Entry<?> other = (others.hasNext() ? others.next() : null);
+
+		for (Iterator<Entry<E>> iterator = asEntrySet().iterator(); other != null && iterator.hasNext();) {
+			Entry<E> entry = iterator.next();
+			int comparison = 1;
+
+			while (other != null && (comparison = compare(entry.getElement(), other.getElement())) > 0) {
+				other = (others.hasNext() ? others.next() : null);
+			}
+
+			if (other != null && comparison == 0) {
+				if (entry.getCount() - other.getCount() > 0) {
+					entry.setCount(entry.getCount() - other.getCount());
+				} else {
+					iterator.remove();
+				}
+
+				result = true;
+			}
+		}
+
+		return result;
+	}
+
+	private boolean retainAllSorted(Iterator<? extends Entry<?>> others) {
+		boolean result = false;
+		Entry<?> other = (others.hasNext() ? others.next() : null);
+
+		for (Iterator<Entry<E>> iterator = asEntrySet().iterator(); iterator.hasNext();) {
+			Entry<E> entry = iterator.next();
+			int comparison = 1;
+
+			while (other != null && (comparison = compare(entry.getElement(), other.getElement())) > 0) {
+				other = (others.hasNext() ? others.next() : null);
+			}
+
+			if (other == null || comparison < 0) {
+				iterator.remove();
+				result = true;
+			} else if (entry.getCount() > other.getCount()) {
+				entry.setCount(other.getCount());
+				result = true;
+			}
+		}
+
+		return result;
+	}
+
+	private int compare(Object first, Object second) {
+		Comparator<Object> comparator = (Comparator<Object>)((SortedBag<?>)this).comparator();
+		return (comparator == null ? ((Comparable<Object>)first).compareTo(second) : comparator.compare(first, second));
+	}
+
+	private static long log2(int value) {
+		return 32 - Integer.numberOfLeadingZeros(value);
+	}
+
 	@Override
 	public boolean addIf(Predicate<? super E> filter) {
 		return putIf(filter, 1);
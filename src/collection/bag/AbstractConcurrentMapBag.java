@@ -0,0 +1,571 @@
+package collection.bag;
+
+import static java.util.Objects.requireNonNull;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntBinaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * This class provides a concurrent map-based implementation of the
+ * <tt>Bag</tt> interface, to minimize the effort required to implement
+ * thread-safe bags.
+ *
+ * <p>Each element is mapped to an {@link AtomicInteger} holding its count,
+ * which is updated by compare-and-set, so operations on distinct elements
+ * never contend and operations on the same element never lock. A counter
+ * that drops to zero is dead: it is removed from the map and never revived,
+ * a later insertion of its element maps a new counter instead. The number
+ * of occurrences is kept in a {@link LongAdder}, so no global lock is needed
+ * to maintain it.</p>
+ *
+ * <p>Iterators and views are <i>weakly consistent</i>: they never throw
+ * {@link java.util.ConcurrentModificationException}, and they may or may
+ * not show the effects of modifications made after their creation.</p>
+ *
+ * @param <E> the type of elements maintained by this bag
+ *
+ * @author Thiago Reis
+ * @see Bag
+ * @see AbstractBag
+ * @see AbstractMapBag
+ * @since 1.0
+ */
+abstract class AbstractConcurrentMapBag<E> extends AbstractBag<E> {
+	protected transient ConcurrentMap<E, AtomicInteger> map;
+
+	/**
+	 * The number of element occurrences contained in this bag.
+	 */
+	protected transient LongAdder occurrences;
+
+	/**
+	 * Sole constructor. (For invocation by subclass constructors, typically implicit.)
+	 */
+	protected AbstractConcurrentMapBag() {
+		//empty
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The returned value is exact in the absence of concurrent
+	 * updates, otherwise it is a moment-in-time estimate.</p>
+	 */
+	@Override
+	public int size() {
+		long size = occurrences.sum();
+
+		if (size < 0) {
+			return 0;
+		}
+
+		if (size > Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+
+		return (int)size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (AtomicInteger counter : map.values()) {
+			if (counter.get() > 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return count(object) > 0;
+	}
+
+	@Override
+	public int count(Object object) {
+		AtomicInteger counter = (object == null ? null : map.get(object));
+		return (counter == null ? 0 : counter.get());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The returned iterator is weakly consistent and returns as many
+	 * occurrences of each element as it counted when reaching it. Its
+	 * <tt>remove</tt> method removes one occurrence of the last element
+	 * returned, if there is any left.</p>
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			//immutable state
+			private final Iterator<Map.Entry<E, AtomicInteger>> wrapee = map.entrySet().iterator();
+
+			//mutable state
+			private E current;
+			private int countdown = 0;
+			private boolean removable = false;
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				while (countdown == 0 && wrapee.hasNext()) {
+					Map.Entry<E, AtomicInteger> entry = wrapee.next();
+					current = entry.getKey();
+					countdown = entry.getValue().get();
+				}
+
+				return countdown > 0;
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException("Iteration has no more elements.");
+				}
+
+				countdown--;
+				removable = true;
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				if (!removable) {
+					throw new IllegalStateException("The iterator.next() method has not yet been called, or the iterator.remove() method has already been called after the last call to the iterator.next() method.");
+				}
+
+				removable = false;
+				AbstractConcurrentMapBag.this.remove(current);
+			}
+		};
+	}
+
+	/**
+	 * This field is initialized to contain an instance of the
+	 * view the first time this view is requested. The view
+	 * is stateless, so there's no reason to create more than one.
+	 */
+	protected transient volatile Set<Entry<E>> entries;
+
+	@Override
+	public Set<Entry<E>> asEntrySet() {
+		if (entries == null) {
+			entries = new AbstractSet<Entry<E>>() {
+				@Override
+				public int size() {
+					return map.size();
+				}
+
+				@Override
+				public boolean isEmpty() {
+					return AbstractConcurrentMapBag.this.isEmpty();
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					return object instanceof Entry
+						&& ((Entry<?>)object).getCount() > 0
+						&& count(((Entry<?>)object).getElement()) == ((Entry<?>)object).getCount();
+				}
+
+				@Override
+				public boolean remove(Object object) {
+					if (!(object instanceof Entry) || ((Entry<?>)object).getElement() == null) {
+						return false;
+					}
+
+					//removes the element only if its count still matches
+					Object element = ((Entry<?>)object).getElement();
+					int count = ((Entry<?>)object).getCount();
+					AtomicInteger counter = map.get(element);
+
+					if (count > 0 && counter != null && counter.compareAndSet(count, 0)) {
+						map.remove(element, counter);
+						occurrences.add(-count);
+						return true;
+					}
+
+					return false;
+				}
+
+				@Override
+				public void clear() {
+					AbstractConcurrentMapBag.this.clear();
+				}
+
+				@Override
+				public Iterator<Entry<E>> iterator() {
+					return new Iterator<Entry<E>>() {
+						//immutable state
+						private final Iterator<Map.Entry<E, AtomicInteger>> wrapee = map.entrySet().iterator();
+
+						//mutable state
+						private Map.Entry<E, AtomicInteger> next;
+						private E current;
+
+						//iterator behaviour
+						@Override
+						public boolean hasNext() {
+							while (next == null && wrapee.hasNext()) {
+								Map.Entry<E, AtomicInteger> entry = wrapee.next();
+
+								if (entry.getValue().get() > 0) {
+									next = entry;
+								}
+							}
+
+							return next != null;
+						}
+
+						@Override
+						public Entry<E> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException("Iteration has no more elements.");
+							}
+
+							Map.Entry<E, AtomicInteger> entry = next;
+							next = null;
+							current = entry.getKey();
+
+							return new Entry<E>() {
+								//immutable state
+								private final E element = entry.getKey();
+								private final AtomicInteger counter = entry.getValue();
+
+								//entry behaviour
+								@Override
+								public E getElement() {
+									return element;
+								}
+
+								@Override
+								public int getCount() {
+									return counter.get();
+								}
+
+								@Override
+								public int setCount(int count) {
+									if (count < 1) {
+										throw new IllegalArgumentException("Invalid count value for entry: " + toString() + ".");
+									}
+
+									return set(element, count);
+								}
+
+								//object behaviour
+								@Override
+								public int hashCode() {
+									return element.hashCode() ^ counter.get();
+								}
+
+								@Override
+								public boolean equals(Object object) {
+									return object == this || (
+										object instanceof Entry
+										&& element.equals(((Entry<?>)object).getElement())
+										&& counter.get() == ((Entry<?>)object).getCount()
+									);
+								}
+
+								@Override
+								public String toString() {
+									return element + "=" + counter.get();
+								}
+							};
+						}
+
+						@Override
+						public void remove() {
+							if (current == null) {
+								throw new IllegalStateException("The iterator.next() method has not yet been called, or the iterator.remove() method has already been called after the last call to the iterator.next() method.");
+							}
+
+							delete(current);
+							current = null;
+						}
+					};
+				}
+			};
+		}
+
+		return entries;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation traverses the backing map directly, skipping
+	 * dead counters, so no entry object is allocated. It is weakly
+	 * consistent and each count is read once, when its element is
+	 * reached.</p>
+	 */
+	@Override
+	public void forEachEntry(ObjIntConsumer<? super E> action) {
+		requireNonNull(action, "Invalid null action.");
+
+		map.forEach((element, counter) -> {
+			int count = counter.get();
+
+			if (count > 0) {
+				action.accept(element, count);
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation streams the entry set of the backing map, so
+	 * it splits as well as the map does, and is weakly consistent. It
+	 * allocates an entry per element, as each one is an immutable snapshot
+	 * of its element and a count read once, which the counter, updated in
+	 * place, could not provide. Use {@link #forEachEntry(ObjIntConsumer)} or
+	 * {@link #counts()} to traverse this bag without allocating.</p>
+	 */
+	@Override
+	public Stream<Entry<E>> entryStream() {
+		return map.entrySet().stream()
+			.<Entry<E>>map(entry -> new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().get()))
+			.filter(entry -> entry.getCount() > 0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation streams the counters of the backing map,
+	 * skipping dead ones, and is weakly consistent.</p>
+	 */
+	@Override
+	public IntStream counts() {
+		return map.values().stream().mapToInt(AtomicInteger::get).filter(count -> count > 0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This operation is atomic with respect to the other
+	 * update operations on the same element.</p>
+	 */
+	@Override
+	public int put(E element, int amount) {
+		requireNonNull(element, "Invalid null element.");
+
+		if (amount < 0) {
+			return subtract(element, amount);
+		} else if (amount == 0) {
+			return count(element);
+		}
+
+		for (;;) {
+			AtomicInteger counter = map.get(element);
+
+			if (counter == null && (counter = map.putIfAbsent(element, new AtomicInteger(amount))) == null) {
+				occurrences.add(amount);
+				return 0;
+			}
+
+			for (int count; (count = counter.get()) > 0;) {
+				if (amount > Integer.MAX_VALUE - count) {
+					throw new IllegalArgumentException("Invalid count overflow: " + count + " + " + amount + ".");
+				}
+
+				if (counter.compareAndSet(count, count + amount)) {
+					occurrences.add(amount);
+					return count;
+				}
+			}
+
+			//dead counter, replaces it unless another thread already did
+			if (map.replace(element, counter, new AtomicInteger(amount))) {
+				occurrences.add(amount);
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This operation is atomic with respect to the other
+	 * update operations on the same element.</p>
+	 */
+	@Override
+	public int set(E element, int count) {
+		requireNonNull(element, "Invalid null element.");
+
+		if (count <= 0) {
+			return delete(element);
+		}
+
+		for (;;) {
+			AtomicInteger counter = map.get(element);
+
+			if (counter == null && (counter = map.putIfAbsent(element, new AtomicInteger(count))) == null) {
+				occurrences.add(count);
+				return 0;
+			}
+
+			for (int previous; (previous = counter.get()) > 0;) {
+				if (counter.compareAndSet(previous, count)) {
+					occurrences.add(count - previous);
+					return previous;
+				}
+			}
+
+			//dead counter, replaces it unless another thread already did
+			if (map.replace(element, counter, new AtomicInteger(count))) {
+				occurrences.add(count);
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This operation is atomic with respect to the other update
+	 * operations on the same element. The remapping function may be
+	 * applied more than once under contention, so it should be short and
+	 * free of side effects.</p>
+	 */
+	@Override
+	public int merge(E element, int count, IntBinaryOperator function) {
+		requireNonNull(function, "Invalid null function.");
+		return compute(element, (key, previous) -> (previous == 0 ? count : function.applyAsInt(previous, count)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This operation is atomic with respect to the other update
+	 * operations on the same element. The function may be applied more
+	 * than once under contention, so it should be short and free of
+	 * side effects.</p>
+	 */
+	@Override
+	public int compute(E element, ObjIntToIntFunction<? super E> function) {
+		requireNonNull(element, "Invalid null element.");
+		requireNonNull(function, "Invalid null function.");
+
+		for (;;) {
+			AtomicInteger counter = map.get(element);
+
+			if (counter == null) {
+				int result = function.applyAsInt(element, 0);
+
+				if (result <= 0) {
+					return 0;
+				}
+
+				if (map.putIfAbsent(element, new AtomicInteger(result)) == null) {
+					occurrences.add(result);
+					return result;
+				}
+
+				continue;
+			}
+
+			for (int previous; (previous = counter.get()) > 0;) {
+				int result = Math.max(function.applyAsInt(element, previous), 0);
+
+				if (counter.compareAndSet(previous, result)) {
+					if (result == 0) {
+						map.remove(element, counter);
+					}
+
+					occurrences.add(result - previous);
+					return result;
+				}
+			}
+
+			//dead counter, replaces it unless another thread already did
+			int result = function.applyAsInt(element, 0);
+
+			if (result <= 0) {
+				return 0;
+			}
+
+			if (map.replace(element, counter, new AtomicInteger(result))) {
+				occurrences.add(result);
+				return result;
+			}
+		}
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		return subtract(object, -1) > 0;
+	}
+
+	@Override
+	public int delete(Object object) {
+		AtomicInteger counter = (object == null ? null : map.get(object));
+
+		if (counter == null) {
+			return 0;
+		}
+
+		for (int count; (count = counter.get()) > 0;) {
+			if (counter.compareAndSet(count, 0)) {
+				map.remove(object, counter);
+				occurrences.add(-count);
+				return count;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation deletes each element in turn, so it is not
+	 * atomic: occurrences added concurrently may survive the call.</p>
+	 */
+	@Override
+	public void clear() {
+		for (E element : map.keySet()) {
+			delete(element);
+		}
+	}
+
+	//miscellaneous
+	/**
+	 * Removes up to <tt>-amount</tt> occurrences of the specified
+	 * element, returning its previous count.
+	 */
+	private int subtract(Object object, int amount) {
+		assert amount < 0;
+		AtomicInteger counter = (object == null ? null : map.get(object));
+
+		if (counter == null) {
+			return 0;
+		}
+
+		for (int count; (count = counter.get()) > 0;) {
+			int result = Math.max(count + amount, 0);
+
+			if (counter.compareAndSet(count, result)) {
+				if (result == 0) {
+					map.remove(object, counter);
+				}
+
+				occurrences.add(result - count);
+				return count;
+			}
+		}
+
+		return 0;
+	}
+}
@@ -4,10 +4,24 @@ import static java.util.Objects.requireNonNull;
 import collection.AbstractIterator;
 import java.io.Serializable;
 import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntBinaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * This class provides a map-based implementation of the <tt>Bag</tt>
@@ -46,6 +60,8 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 
 	@Override
 	public int size() {
+		long size = occurrences();
+
 		if (size < Integer.MIN_VALUE) {
 			return Integer.MIN_VALUE;
 		}
@@ -96,7 +112,7 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 			//initializer
 			{
 				setRemovable(false);
-				setModification(modification);
+				setModification(modification());
 			}
 
 			//iterator behaviour
@@ -108,7 +124,7 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 			@Override
 			public E next() {
 				checkNext(hasNext());
-				checkModification(modification);
+				checkModification(modification());
 				setRemovable(true);
 
 				if (countdown == 0) {
@@ -123,21 +139,133 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 			@Override
 			public void remove() {
 				checkRemovable();
-				checkModification(modification);
+				checkModification(modification());
 				setRemovable(false);
 
-				if (current.getValue().getCount() > 1) {
-					countdown--;
-					current.getValue().setCount(current.getValue().getCount() - 1);
+				//the remaining countdown is left untouched, it counts the occurrences still to be returned
+				Counter counter = current.getValue();
+
+				if (counter.getCount() > 1) {
+					counter.setCount(counter.getCount() - 1);
 				} else {
+					//a TreeMap may reuse the removed entry for its successor, so it is not read afterwards
 					wrapee.remove();
 				}
 
-				setModification(modify(-current.getValue().getCount()));
+				setModification(modify(-1));
 			}
 		};
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation returns a late-binding and fail-fast
+	 * spliterator, which takes a snapshot of the elements and of the
+	 * running sum of their counts when first traversed, split or queried
+	 * for its size. It splits in halves the range of occurrences it covers
+	 * rather than the entries, so the occurrences of an element with a high
+	 * count can be split as well, and reports {@link Spliterator#SIZED} and
+	 * {@link Spliterator#SUBSIZED}. It also reports
+	 * {@link Spliterator#ORDERED} if the backing map is a
+	 * {@link LinkedHashMap} or a {@link SortedMap}, and
+	 * {@link Spliterator#SORTED} in the latter case.</p>
+	 *
+	 * @return a spliterator over the element occurrences in this bag
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new OccurrenceSpliterator();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation traverses the backing map directly, reading
+	 * the counters in place, so no entry object is allocated.</p>
+	 *
+	 * @throws ConcurrentModificationException if it is detected
+	 *         that the action modified this bag
+	 */
+	@Override
+	public void forEachEntry(ObjIntConsumer<? super E> action) {
+		requireNonNull(action, "Invalid null action.");
+		int expected = modification();
+
+		map.forEach((element, counter) -> {
+			if (modification() != expected) {
+				throw new ConcurrentModificationException();
+			}
+
+			action.accept(element, counter.getCount());
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation streams the entry set of the backing map, so
+	 * it splits as well as the map does and fails fast as the map does.
+	 * Unlike the other traversals of this class, it allocates an entry per
+	 * element: the backing map holds a counter per element, not a bag
+	 * entry, and the consumers of the stream may keep its entries, as
+	 * {@link Bags#mostCommon(Bag, int)} does, so each entry is an immutable
+	 * snapshot of its element and count, which remains valid after the
+	 * stream is consumed. Use {@link #forEachEntry(ObjIntConsumer)} or
+	 * {@link #counts()} to traverse this bag without allocating.</p>
+	 */
+	@Override
+	public Stream<Entry<E>> entryStream() {
+		return map.entrySet().stream().map(entry -> new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().getCount()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation streams the counters of the backing map,
+	 * so neither an entry nor a boxed count is allocated per element.</p>
+	 */
+	@Override
+	public IntStream counts() {
+		return map.values().stream().mapToInt(Counter::getCount);
+	}
+
+	/**
+	 * The index over the entries of this bag built by the last sample, which
+	 * holds the modification count it was built at. The index is only read
+	 * when drawing with replacement, so it is kept until this bag is
+	 * modified. It is volatile, as concurrent readers may build it, for
+	 * example under the read lock of {@link Bags#readWriteLockedBag(Bag)}.
+	 */
+	private transient volatile Sampler<E> sampler;
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation keeps the index built over the entries of this
+	 * bag until this bag is modified, as detected by its modification count,
+	 * so repeated draws from an unmodified bag run in logarithmic time in
+	 * the number of distinct elements.</p>
+	 */
+	@Override
+	public E sample(Random random) {
+		requireNonNull(random, "Invalid null random.");
+		return sampler().next(random);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation draws from the index kept by
+	 * {@link #sample(Random)}, or from a copy of it when drawing without
+	 * replacement.</p>
+	 */
+	@Override
+	public Stream<E> sample(Random random, long size, boolean replacement) {
+		requireNonNull(random, "Invalid null random.");
+		return sampler().stream(random, size, replacement);
+	}
+
 	/**
 	 * This field is initialized to contain an instance of the
 	 * view the first time this view is requested. The view
@@ -224,7 +352,7 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 						//initializer
 						{
 							setRemovable(false);
-							setModification(modification);
+							setModification(modification());
 						}
 
 						//iterator behaviour
@@ -236,7 +364,7 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 						@Override
 						public Entry<E> next() {
 							checkNext(hasNext());
-							checkModification(modification);
+							checkModification(modification());
 							setRemovable(true);
 							current = wrapee.next();
 
@@ -311,10 +439,12 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 						@Override
 						public void remove() {
 							checkRemovable();
-							checkModification(modification);
+							checkModification(modification());
 							setRemovable(false);
+							//read before removal, TreeMap may reuse the removed entry for its successor
+							int count = current.getValue().getCount();
 							wrapee.remove();
-							setModification(modify(-current.getValue().getCount()));
+							setModification(modify(-count));
 						}
 					};
 				}
@@ -362,6 +492,55 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>If the specified collection is also a map-based bag, this
+	 * implementation presizes the backing map once for the elements of
+	 * both bags and then merges the counters of the specified bag,
+	 * updating the existing counters of this bag in place. Otherwise,
+	 * if the specified collection is a bag, it only presizes the backing
+	 * map before inheriting the behaviour of <tt>AbstractBag</tt>.</p>
+	 */
+	@Override
+	public boolean addAll(Collection<? extends E> collection) {
+		requireNonNull(collection, "Invalid null collection.");
+
+		if (collection instanceof AbstractMapBag && collection != this) {
+			Map<? extends E, Counter> other = ((AbstractMapBag<? extends E>)collection).map;
+
+			if (other.isEmpty()) {
+				return false;
+			}
+
+			ensureCapacity(map.size() + other.size());
+
+			for (Map.Entry<? extends E, Counter> entry : other.entrySet()) {
+				Counter counter = map.get(entry.getKey());
+				int count = entry.getValue().getCount();
+
+				if (counter == null) {
+					map.put(entry.getKey(), new Counter(count));
+				} else if (count > Integer.MAX_VALUE - counter.getCount()) {
+					throw new IllegalArgumentException("Invalid count overflow: " + counter.getCount() + " + " + count + ".");
+				} else {
+					counter.setCount(counter.getCount() + count);
+				}
+
+				//recorded per entry, so a key rejected by the map leaves the size in step with the counters
+				modify(count);
+			}
+
+			return true;
+		}
+
+		if (collection instanceof Bag) {
+			ensureCapacity(map.size() + ((Bag<?>)collection).asEntrySet().size());
+		}
+
+		return super.addAll(collection);
+	}
+
 	@Override
 	public int set(E element, int count) {
 		//change getCount directly (increase, decrease or sets to zero)
@@ -383,6 +562,48 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation looks up the element once, and updates its
+	 * counter in place if it is contained in this bag and the new count is
+	 * positive. Otherwise, the backing map is updated a second time to
+	 * insert or remove the element.</p>
+	 *
+	 * @throws java.util.ConcurrentModificationException if it is detected
+	 *         that the remapping function modified this bag
+	 */
+	@Override
+	public int merge(E element, int count, IntBinaryOperator function) {
+		requireNonNull(function, "Invalid null function.");
+
+		Counter counter = map.get(element);
+		int expected = modification();
+		int result = (counter == null ? count : function.applyAsInt(counter.getCount(), count));
+		return update(element, counter, result, expected);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation looks up the element once, and updates its
+	 * counter in place if it is contained in this bag and the new count is
+	 * positive. Otherwise, the backing map is updated a second time to
+	 * insert or remove the element.</p>
+	 *
+	 * @throws java.util.ConcurrentModificationException if it is detected
+	 *         that the remapping function modified this bag
+	 */
+	@Override
+	public int compute(E element, ObjIntToIntFunction<? super E> function) {
+		requireNonNull(function, "Invalid null function.");
+
+		Counter counter = map.get(element);
+		int expected = modification();
+		int result = function.applyAsInt(element, (counter == null ? 0 : counter.getCount()));
+		return update(element, counter, result, expected);
+	}
+
 	@Override
 	public boolean remove(Object object) {
 		//if absent, do not insert
@@ -418,8 +639,40 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 
 	@Override
 	public void clear() {
+		long amount = occurrences();
 		map.clear();
-		modify(-size());
+		modify(-amount);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation removes the matching elements in a single
+	 * pass over the backing map, without allocating any entry object,
+	 * and records a single modification.</p>
+	 */
+	@Override
+	public boolean removeIf(Predicate<? super E> filter) {
+		requireNonNull(filter, "Invalid null filter.");
+
+		long amount = 0;
+
+		for (Iterator<Map.Entry<E, Counter>> iterator = map.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<E, Counter> entry = iterator.next();
+
+			if (filter.test(entry.getKey())) {
+				//read before the removal, a TreeMap may reuse the removed entry for its successor
+				amount += entry.getValue().getCount();
+				iterator.remove();
+			}
+		}
+
+		if (amount == 0) {
+			return false;
+		}
+
+		modify(-amount);
+		return true;
 	}
 
 	//object behaviour
@@ -463,12 +716,245 @@ abstract class AbstractMapBag<E> extends AbstractBag<E> {
 	}
 
 	//miscellaneous
-	protected final int modify(int amount) {
+	/**
+	 * Prepares the backing map to hold at least the specified number of
+	 * distinct elements without growing step by step, ahead of a bulk
+	 * insertion. This implementation does nothing, subclasses backed by
+	 * maps that can be presized should override it.
+	 *
+	 * @param distinct the expected number of distinct elements
+	 */
+	protected void ensureCapacity(int distinct) {
+		//empty
+	}
+
+	/**
+	 * Replaces the counters of the backing map with copies, after the map
+	 * was copied from another bag, so that both bags do not share them.
+	 */
+	final void detach() {
+		map.replaceAll((element, counter) -> new Counter(counter.getCount()));
+	}
+
+	/**
+	 * Sets the count of the specified element, whose counter was looked up
+	 * before applying a remapping function, to the computed result.
+	 */
+	private int update(E element, Counter counter, int result, int expected) {
+		if (modification() != expected) {
+			throw new ConcurrentModificationException();
+		}
+
+		if (counter != null) {
+			if (result > 0) {
+				modify(result - counter.setCount(result));
+				return result;
+			}
+
+			map.remove(element);
+			modify(-counter.getCount());
+		} else if (result > 0) {
+			map.put(element, new Counter(result));
+			modify(result);
+			return result;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Adds the given amount to the number of occurrences of this bag and
+	 * records a structural modification, returning the new modification
+	 * count. Views override it to update the bag backing them instead.
+	 */
+	protected int modify(long amount) {
 		size += amount;
 		assert size >= 0 : "Invalid bag negative size.";
 		return ++modification;
 	}
 
+	/**
+	 * Returns the modification count checked by the fail-fast iterators
+	 * of this bag, which views share with the bag backing them.
+	 */
+	protected int modification() {
+		return modification;
+	}
+
+	/**
+	 * Returns the index over the entries of this bag, building it if this
+	 * bag was modified since it was last built.
+	 */
+	private Sampler<E> sampler() {
+		Sampler<E> result = sampler;
+
+		if (result == null || result.modification != modification()) {
+			result = new Sampler<>(this, modification());
+			sampler = result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the number of element occurrences contained in this bag.
+	 * Views override it to count the occurrences within their range.
+	 */
+	long occurrences() {
+		return size;
+	}
+
+	/**
+	 * Spliterator over the positions of the element occurrences, from
+	 * <tt>0</tt> to the size of the bag, in the iteration order of the
+	 * backing map. The position of the first occurrence of each element
+	 * is kept in a sorted array, which is shared among the spliterators
+	 * split from the same one.
+	 */
+	private final class OccurrenceSpliterator implements Spliterator<E> {
+		//mutable state
+		private Object[] elements;
+		private long[] bounds;
+		private long origin;
+		private long fence = -1;
+		private int index;
+		private int expected;
+
+		//constructors
+		OccurrenceSpliterator() {
+			//late-binding
+		}
+
+		OccurrenceSpliterator(Object[] elements, long[] bounds, long origin, long fence, int index, int expected) {
+			this.elements = elements;
+			this.bounds = bounds;
+			this.origin = origin;
+			this.fence = fence;
+			this.index = index;
+			this.expected = expected;
+		}
+
+		//spliterator behaviour
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			requireNonNull(action, "Invalid null action.");
+
+			if (origin >= getFence()) {
+				return false;
+			}
+
+			while (bounds[index + 1] <= origin) {
+				index++;
+			}
+
+			origin++;
+			action.accept((E)elements[index]);
+
+			if (modification() != expected) {
+				throw new ConcurrentModificationException();
+			}
+
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			requireNonNull(action, "Invalid null action.");
+
+			long fence = getFence();
+			long position = origin;
+			int index = this.index;
+			origin = fence;
+
+			while (position < fence) {
+				while (bounds[index + 1] <= position) {
+					index++;
+				}
+
+				E element = (E)elements[index];
+
+				for (long end = Math.min(bounds[index + 1], fence); position < end; position++) {
+					action.accept(element);
+				}
+			}
+
+			this.index = index;
+
+			if (modification() != expected) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			long fence = getFence();
+			long middle = (origin + fence) >>> 1;
+
+			if (middle <= origin) {
+				return null;
+			}
+
+			Spliterator<E> prefix = new OccurrenceSpliterator(elements, bounds, origin, middle, index, expected);
+			origin = middle;
+			index = indexOf(middle);
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return getFence() - origin;
+		}
+
+		@Override
+		public int characteristics() {
+			if (map instanceof SortedMap) {
+				return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.SORTED;
+			} else if (map instanceof LinkedHashMap) {
+				return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED;
+			} else {
+				return Spliterator.SIZED | Spliterator.SUBSIZED;
+			}
+		}
+
+		@Override
+		public Comparator<? super E> getComparator() {
+			if (map instanceof SortedMap) {
+				return ((SortedMap<E, Counter>)map).comparator();
+			}
+
+			throw new IllegalStateException();
+		}
+
+		//miscellaneous
+		private long getFence() {
+			if (fence < 0) {
+				expected = modification();
+				elements = new Object[map.size()];
+				bounds = new long[map.size() + 1];
+				int index = 0;
+
+				for (Map.Entry<E, Counter> entry : map.entrySet()) {
+					elements[index] = entry.getKey();
+					bounds[index + 1] = bounds[index] + entry.getValue().getCount();
+					index++;
+				}
+
+				fence = bounds[index];
+			}
+
+			return fence;
+		}
+
+		/**
+		 * Returns the index of the element holding the occurrence at the
+		 * specified position, bounds being strictly increasing.
+		 */
+		private int indexOf(long position) {
+			int index = Arrays.binarySearch(bounds, 0, elements.length, position);
+			return (index >= 0 ? index : -index - 2);
+		}
+	}
+
 	final static class Counter /*extends Number*/ implements Comparable<Counter>, Serializable {
 		//static state
 		private static final long serialVersionUID = -1L;
@@ -1,6 +1,5 @@
 //TODO compare with another bags implementations
 //TODO make all javadoc
-//TODO make all maps types from collections framework (ConcurrentHashBag, ConcurrentSkipListBag...)
 //TODO change comments to english
 //TODO add todo comments on test cases
 //TODO add assertions to check conditions
@@ -11,6 +10,8 @@
 package collection.bag;
 
 import java.io.Serializable;
+import java.util.function.IntBinaryOperator;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Supplier;
 import java.util.function.Predicate;
 import java.util.Collection;
@@ -19,6 +20,9 @@ import java.util.Set;
 import java.util.Map;
 import java.util.Iterator;
 import java.util.Objects;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * A collection that can contains duplicate elements. In other words, a bag
@@ -62,13 +66,21 @@ import java.util.Objects;
  * @see Collection
  * @see AbstractBag
  * @see HashBag
+ * @see OpenHashBag
+ * @see FrequencyBag
+ * @see SpaceSavingBag
+ * @see SlidingWindowBag
+ * @see DecayingBag
  * @see LinkedHashBag
  * @see WeakHashBag
  * @see IdentityHashBag
  * @see EnumBag
+ * @see ConcurrentHashBag
+ * @see ConcurrentSkipListBag
  * @see NavigableBag
  * @see SortedBag
  * @see TreeBag
+ * @see OrderStatisticTreeBag
  * see Bags#singleton(java.lang.Object)
  * see Bags#EMPTY_BAG
  * @since 1.0
@@ -524,6 +536,303 @@ public interface Bag<E> extends Collection<E> {
 	 */
 	boolean setIf(Predicate<? super E> filter, int count);
 
+	/**
+	 * If the specified element is not already contained in this bag, sets
+	 * its count to the given count. Otherwise, replaces its count with the
+	 * result of the given remapping function applied to the current count
+	 * and the given count, or removes all of its occurrences if the result
+	 * is not positive (optional operation). This method may be of use when
+	 * combining multiple counts for an element, for example to add a given
+	 * amount without exceeding a cap:
+	 *
+	 * <pre> {@code
+	 * bag.merge(element, amount, (count, value) -> Math.min(count + value, cap));
+	 * }</pre>
+	 *
+	 * <p>The default implementation is equivalent to performing the
+	 * following steps for this <tt>bag</tt>, then returning the new count:</p>
+	 *
+	 * <pre> {@code
+	 * int previous = bag.count(element);
+	 * int result = (previous == 0 ? count : function.applyAsInt(previous, count));
+	 * if (result > 0)
+	 *     bag.set(element, result);
+	 * else if (previous > 0)
+	 *     bag.delete(element);
+	 * }</pre>
+	 *
+	 * <p>The default implementation makes no guarantees about
+	 * synchronization or atomicity properties of this method, and looks
+	 * up the element more than once. Implementations should override it
+	 * to update the count with a single lookup, where possible.</p>
+	 *
+	 * @param  element element with which the resulting count is to be associated
+	 * @param  count the count to be merged with the current count of the
+	 *         element or, if it is not contained, to be set for it
+	 * @param  function the function to recompute a count if present
+	 * @return the new count of the specified element, or
+	 *         <tt>zero</tt> if it was removed from this bag
+	 * @throws UnsupportedOperationException if the <tt>set</tt> or
+	 *         <tt>delete</tt> operation is not supported by this bag
+	 * @throws ClassCastException if the class of the specified
+	 *         element prevents it from being set to this bag
+	 * @throws NullPointerException if the specified function is null,
+	 *         or if the specified element is null and this bag
+	 *         does not permit null elements
+	 * @throws IllegalArgumentException if some property of the
+	 *         specified element prevents it from being set to this bag
+	 * @since 1.0
+	 */
+	default int merge(E element, int count, IntBinaryOperator function) {
+		Objects.requireNonNull(function, "Invalid null function.");
+
+		int previous = count(element);
+		int result = (previous == 0 ? count : function.applyAsInt(previous, count));
+
+		if (result > 0) {
+			set(element, result);
+			return result;
+		}
+
+		if (previous > 0) {
+			delete(element);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Replaces the count of the specified element with the result of the
+	 * given function applied to the element and its current count, which
+	 * is <tt>zero</tt> if it is not contained in this bag, or removes all
+	 * of its occurrences if the result is not positive (optional
+	 * operation). For example, to reset an element count once it goes
+	 * over a threshold:
+	 *
+	 * <pre> {@code
+	 * bag.compute(element, (e, count) -> (count + 1 > threshold ? 0 : count + 1));
+	 * }</pre>
+	 *
+	 * <p>The default implementation is equivalent to performing the
+	 * following steps for this <tt>bag</tt>, then returning the new count:</p>
+	 *
+	 * <pre> {@code
+	 * int previous = bag.count(element);
+	 * int result = function.applyAsInt(element, previous);
+	 * if (result > 0)
+	 *     bag.set(element, result);
+	 * else if (previous > 0)
+	 *     bag.delete(element);
+	 * }</pre>
+	 *
+	 * <p>The default implementation makes no guarantees about
+	 * synchronization or atomicity properties of this method, and looks
+	 * up the element more than once. Implementations should override it
+	 * to update the count with a single lookup, where possible.</p>
+	 *
+	 * @param  element element with which the resulting count is to be associated
+	 * @param  function the function to compute a count
+	 * @return the new count of the specified element, or
+	 *         <tt>zero</tt> if it is not contained in this bag
+	 * @throws UnsupportedOperationException if the <tt>set</tt> or
+	 *         <tt>delete</tt> operation is not supported by this bag
+	 * @throws ClassCastException if the class of the specified
+	 *         element prevents it from being set to this bag
+	 * @throws NullPointerException if the specified function is null,
+	 *         or if the specified element is null and this bag
+	 *         does not permit null elements
+	 * @throws IllegalArgumentException if some property of the
+	 *         specified element prevents it from being set to this bag
+	 * @since 1.0
+	 */
+	default int compute(E element, ObjIntToIntFunction<? super E> function) {
+		Objects.requireNonNull(function, "Invalid null function.");
+
+		int previous = count(element);
+		int result = function.applyAsInt(element, previous);
+
+		if (result > 0) {
+			set(element, result);
+			return result;
+		}
+
+		if (previous > 0) {
+			delete(element);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Performs the given action for each element of this bag and its count,
+	 * until all entries have been processed or the action throws an
+	 * exception. Entries are processed in the order of the <tt>asEntrySet</tt>
+	 * iterator, if that order is specified. Exceptions thrown by the action
+	 * are relayed to the caller.
+	 *
+	 * <p>The default implementation is equivalent to, for this <tt>bag</tt>:</p>
+	 *
+	 * <pre> {@code
+	 * for (Bag.Entry<E> entry : bag.asEntrySet())
+	 *     action.accept(entry.getElement(), entry.getCount());
+	 * }</pre>
+	 *
+	 * <p>Unlike the iteration of the <tt>asEntrySet</tt> view, implementations
+	 * should override this method to traverse their elements and counts
+	 * without allocating any entry object, where possible.</p>
+	 *
+	 * @param  action the action to be performed for each element and its count
+	 * @throws NullPointerException if the specified action is null
+	 * @throws java.util.ConcurrentModificationException if an entry is found
+	 *         to be removed during iteration
+	 * @since 1.0
+	 */
+	default void forEachEntry(ObjIntConsumer<? super E> action) {
+		Objects.requireNonNull(action, "Invalid null action.");
+
+		for (Entry<E> entry : asEntrySet()) {
+			action.accept(entry.getElement(), entry.getCount());
+		}
+	}
+
+	/**
+	 * Returns a sequential <tt>Stream</tt> with the entries of this bag as its
+	 * source, one per distinct element. The stream may be turned parallel by
+	 * calling its <tt>parallel</tt> method.
+	 *
+	 * <p>The default implementation creates the stream from the spliterator
+	 * of the <tt>asEntrySet</tt> view. Implementations should override it to
+	 * return a stream that splits well, where possible.</p>
+	 *
+	 * @return a sequential <tt>Stream</tt> over the entries of this bag
+	 * @since 1.0
+	 */
+	default Stream<Entry<E>> entryStream() {
+		return asEntrySet().stream();
+	}
+
+	/**
+	 * Returns a sequential <tt>IntStream</tt> with the counts of the
+	 * distinct elements of this bag as its source, in the same order as
+	 * {@link #entryStream()}. For example, to build a histogram of the
+	 * counts without boxing them:
+	 *
+	 * <pre> {@code
+	 * IntSummaryStatistics statistics = bag.counts().summaryStatistics();
+	 * }</pre>
+	 *
+	 * <p>The default implementation maps the entries of
+	 * {@link #entryStream()} to their counts.</p>
+	 *
+	 * @return a sequential <tt>IntStream</tt> over the counts of this bag
+	 * @since 1.0
+	 */
+	default IntStream counts() {
+		return entryStream().mapToInt(Entry::getCount);
+	}
+
+	/**
+	 * Returns a random element occurrence of this bag, drawn by the specified
+	 * source of randomness, so that each element is returned with probability
+	 * <tt>count(element) / size()</tt>. For example, to drive a load test by
+	 * the frequency of the requests seen in production:
+	 *
+	 * <pre> {@code
+	 * String next = requests.sample(random);
+	 * }</pre>
+	 *
+	 * <p>The default implementation builds an index over the entries of this
+	 * bag, taken through {@link #forEachEntry(ObjIntConsumer)}, on every call,
+	 * so it runs in linear time in the number of distinct elements.
+	 * Implementations should override it to keep the index until this bag is
+	 * modified, where possible, so repeated draws run in logarithmic time.</p>
+	 *
+	 * @param  random the source of randomness
+	 * @return a random element occurrence of this bag
+	 * @throws NullPointerException if the specified source of randomness is null
+	 * @throws java.util.NoSuchElementException if this bag is empty
+	 * @since 1.0
+	 */
+	default E sample(Random random) {
+		Objects.requireNonNull(random, "Invalid null random.");
+		return new Sampler<>(this).next(random);
+	}
+
+	/**
+	 * Returns a sequential <tt>Stream</tt> of the specified number of random
+	 * element occurrences of this bag, drawn by the specified source of
+	 * randomness as {@link #sample(Random)} does. Drawn with replacement,
+	 * every occurrence is drawn from the whole bag. Drawn without replacement,
+	 * each occurrence drawn is left out of the following draws, so an
+	 * element is returned at most as many times as its count, and the number
+	 * of occurrences must not exceed the size of this bag.
+	 *
+	 * <p>The occurrences are drawn from the contents of this bag when this
+	 * method is called, later modifications of this bag do not affect the
+	 * stream, and this bag is left unmodified. The default implementation
+	 * builds an index over the entries of this bag in linear time in the
+	 * number of distinct elements, after which each occurrence is drawn in
+	 * logarithmic time.</p>
+	 *
+	 * @param  random the source of randomness
+	 * @param  size the number of occurrences to be drawn
+	 * @param  replacement whether the occurrences are drawn with replacement
+	 * @return a sequential <tt>Stream</tt> of random occurrences of this bag
+	 * @throws NullPointerException if the specified source of randomness is null
+	 * @throws IllegalArgumentException if the specified size is negative, or
+	 *         greater than the size of this bag when drawn without replacement
+	 * @throws java.util.NoSuchElementException if this bag is empty and the
+	 *         specified size is positive
+	 * @since 1.0
+	 */
+	default Stream<E> sample(Random random, long size, boolean replacement) {
+		Objects.requireNonNull(random, "Invalid null random.");
+		return new Sampler<>(this).stream(random, size, replacement);
+	}
+
+	/**
+	 * Returns a new {@link DistinctSketch} holding the distinct elements of
+	 * this bag, with the default precision. It is equivalent to
+	 * {@link #distinctSketch(int) distinctSketch(14)}.
+	 *
+	 * @return a new sketch holding the distinct elements of this bag
+	 * @since 1.0
+	 */
+	default DistinctSketch<E> distinctSketch() {
+		return distinctSketch(DistinctSketch.DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Returns a new {@link DistinctSketch} with the specified precision
+	 * holding the distinct elements of this bag, whose counts are ignored.
+	 * The sketches of several bags, or of a bag and of a stream, can then
+	 * be combined to estimate the number of distinct elements of their
+	 * union, without building it. For example, over many shards:
+	 *
+	 * <pre> {@code
+	 * DistinctSketch<String> union = new DistinctSketch<>();
+	 * for (Bag<String> shard : shards)
+	 *     union.union(shard.distinctSketch());
+	 * long distinct = union.estimate();
+	 * }</pre>
+	 *
+	 * <p>The default implementation adds each element traversed by
+	 * {@link #forEachEntry(ObjIntConsumer)}, so it runs in linear time in the
+	 * number of distinct elements and allocates no entry object where that
+	 * method does not.</p>
+	 *
+	 * @param  precision the number of bits of the hash selecting a register
+	 *         of the sketch, from <tt>4</tt> to <tt>16</tt>
+	 * @return a new sketch holding the distinct elements of this bag
+	 * @throws IllegalArgumentException if the precision is out of range
+	 * @since 1.0
+	 */
+	default DistinctSketch<E> distinctSketch(int precision) {
+		DistinctSketch<E> sketch = new DistinctSketch<>(precision);
+		forEachEntry((element, count) -> sketch.add(element));
+		return sketch;
+	}
+
 	/**
 	 * Removes all of the element occurrences of this bag that satisfy the given
 	 * predicate. Errors or runtime exceptions thrown during iteration or by
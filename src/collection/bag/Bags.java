@@ -2,7 +2,37 @@
 
 package collection.bag;
 
-import java.util.Collections;
+import static java.util.Objects.requireNonNull;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * This class consists exclusively of static methods that operate on or return bags.
@@ -15,11 +45,1861 @@ public class Bags {
 		//empty
 	}
 
+	/**
+	 * Returns the element at the specified position of the specified bag,
+	 * in descending order of count, so position <tt>0</tt> holds a most
+	 * common element. Elements with the same count are taken in no
+	 * particular order. This method runs in <tt>O(n log(position))</tt>
+	 * time, where <tt>n</tt> is the number of distinct elements of the bag.
+	 *
+	 * @param <T> the class of the elements in the bag
+	 * @param bag the bag whose element is to be returned
+	 * @param position the position of the element, in descending order of count
+	 * @return the element at the specified position of the bag
+	 * @throws NullPointerException if the specified bag is null
+	 * @throws IllegalArgumentException if the specified position is negative
+	 * @throws NoSuchElementException if the bag has no more distinct elements
+	 *         than the specified position
+	 * @see #mostCommon(Bag, int)
+	 */
 	public static <T> T max(Bag<T> bag, int position) {
-		return null;
+		requireNonNull(bag, "Invalid null bag.");
+
+		if (position < 0) {
+			throw new IllegalArgumentException("Invalid negative position: " + position + ".");
+		}
+
+		if (position >= bag.asEntrySet().size()) {
+			throw new NoSuchElementException("Invalid position: " + position + ".");
+		}
+
+		return mostCommon(bag, position + 1).get(position).getElement();
+	}
+
+	/**
+	 * Returns the <tt>k</tt> most common elements of the specified bag and
+	 * their counts, in descending order of count, or all of its elements if
+	 * it has fewer than <tt>k</tt>. Elements with the same count are taken
+	 * in no particular order, and the returned entries are immutable.
+	 *
+	 * <p>The entries are selected in a single pass over
+	 * {@link Bag#forEachEntry(ObjIntConsumer)}, keeping the best <tt>k</tt>
+	 * so far in a heap of primitive counts, so this method runs in
+	 * <tt>O(n log k)</tt> time and <tt>O(k)</tt> space, where <tt>n</tt> is
+	 * the number of distinct elements of the bag. The entries of a
+	 * {@link FrequencyBag} or a {@link SpaceSavingBag} are read from its
+	 * {@link FrequencyBag#countIterator(boolean) countIterator} instead,
+	 * in <tt>O(k)</tt> time.</p>
+	 *
+	 * @param <E> the class of the elements in the bag
+	 * @param bag the bag whose most common elements are to be returned
+	 * @param k the number of elements to be returned
+	 * @return a new list with the <tt>k</tt> most common entries of the bag
+	 * @throws NullPointerException if the specified bag is null
+	 * @throws IllegalArgumentException if <tt>k</tt> is negative
+	 * @see #parallelMostCommon(Bag, int)
+	 */
+	public static <E> List<Bag.Entry<E>> mostCommon(Bag<E> bag, int k) {
+		return common(bag, k, true);
+	}
+
+	/**
+	 * Returns the <tt>k</tt> least common elements of the specified bag and
+	 * their counts, in ascending order of count, or all of its elements if
+	 * it has fewer than <tt>k</tt>. It is the counterpart of
+	 * {@link #mostCommon(Bag, int)}, with the same complexity.
+	 *
+	 * @param <E> the class of the elements in the bag
+	 * @param bag the bag whose least common elements are to be returned
+	 * @param k the number of elements to be returned
+	 * @return a new list with the <tt>k</tt> least common entries of the bag
+	 * @throws NullPointerException if the specified bag is null
+	 * @throws IllegalArgumentException if <tt>k</tt> is negative
+	 * @see #parallelLeastCommon(Bag, int)
+	 */
+	public static <E> List<Bag.Entry<E>> leastCommon(Bag<E> bag, int k) {
+		return common(bag, k, false);
+	}
+
+	/**
+	 * Returns the <tt>k</tt> most common elements of the specified bag, as
+	 * {@link #mostCommon(Bag, int)} does, selecting them in parallel. The
+	 * {@link Bag#entryStream() entry stream} of the bag is split in the
+	 * common fork-join pool, the best <tt>k</tt> entries of each split are
+	 * kept in a heap of their own, and the heaps of the splits are merged
+	 * as the splits complete. It is worth it for large bags whose entry
+	 * streams split well, and the bag must not be modified meanwhile.
+	 *
+	 * @param <E> the class of the elements in the bag
+	 * @param bag the bag whose most common elements are to be returned
+	 * @param k the number of elements to be returned
+	 * @return a new list with the <tt>k</tt> most common entries of the bag
+	 * @throws NullPointerException if the specified bag is null
+	 * @throws IllegalArgumentException if <tt>k</tt> is negative
+	 */
+	public static <E> List<Bag.Entry<E>> parallelMostCommon(Bag<E> bag, int k) {
+		return parallelCommon(bag, k, true);
+	}
+
+	/**
+	 * Returns the <tt>k</tt> least common elements of the specified bag, as
+	 * {@link #leastCommon(Bag, int)} does, selecting them in parallel as
+	 * {@link #parallelMostCommon(Bag, int)} does.
+	 *
+	 * @param <E> the class of the elements in the bag
+	 * @param bag the bag whose least common elements are to be returned
+	 * @param k the number of elements to be returned
+	 * @return a new list with the <tt>k</tt> least common entries of the bag
+	 * @throws NullPointerException if the specified bag is null
+	 * @throws IllegalArgumentException if <tt>k</tt> is negative
+	 */
+	public static <E> List<Bag.Entry<E>> parallelLeastCommon(Bag<E> bag, int k) {
+		return parallelCommon(bag, k, false);
+	}
+
+	private static <E> List<Bag.Entry<E>> common(Bag<E> bag, int k, boolean most) {
+		int capacity = capacity(bag, k);
+
+		if (bag instanceof FrequencyBag || bag instanceof SpaceSavingBag) {
+			List<Bag.Entry<E>> result = new ArrayList<>(capacity);
+			Iterator<Bag.Entry<E>> iterator = (bag instanceof FrequencyBag)
+				? ((FrequencyBag<E>)bag).countIterator(!most)
+				: ((SpaceSavingBag<E>)bag).countIterator(!most);
+
+			for (; result.size() < capacity && iterator.hasNext();) {
+				result.add(iterator.next());
+			}
+
+			return result;
+		}
+
+		CountHeap<E> heap = new CountHeap<>(capacity, most);
+		bag.forEachEntry(heap);
+		return heap.toList();
+	}
+
+	private static <E> List<Bag.Entry<E>> parallelCommon(Bag<E> bag, int k, boolean most) {
+		int capacity = capacity(bag, k);
+		return bag.entryStream().parallel().collect(Collector.of(() -> new CountHeap<E>(capacity, most), CountHeap::add, CountHeap::merge, CountHeap::toList, Collector.Characteristics.UNORDERED));
+	}
+
+	/**
+	 * Returns the number of entries to be selected from the specified bag.
+	 */
+	private static int capacity(Bag<?> bag, int k) {
+		requireNonNull(bag, "Invalid null bag.");
+
+		if (k < 0) {
+			throw new IllegalArgumentException("Invalid negative k: " + k + ".");
+		}
+
+		return Math.min(k, bag.asEntrySet().size());
+	}
+
+	/**
+	 * Binary heap of bounded capacity holding the best entries offered so
+	 * far, the highest or the lowest counts, in parallel arrays of elements
+	 * and primitive counts. Its root is the worst entry kept, which is the
+	 * one replaced when a better entry is offered to a full heap.
+	 */
+	private static final class CountHeap<E> implements ObjIntConsumer<E> {
+		//immutable state
+		private final boolean highest;
+		private final Object[] elements;
+		private final int[] counts;
+
+		//mutable state
+		private int size = 0;
+
+		//constructors
+		CountHeap(int capacity, boolean highest) {
+			this.highest = highest;
+			this.elements = new Object[capacity];
+			this.counts = new int[capacity];
+		}
+
+		//consumer behaviour
+		@Override
+		public void accept(E element, int count) {
+			if (size < counts.length) {
+				elements[size] = element;
+				counts[size] = count;
+				up(size++);
+			} else if (size > 0 && worse(counts[0], count)) {
+				elements[0] = element;
+				counts[0] = count;
+				down(0);
+			}
+		}
+
+		//count heap behaviour
+		void add(Bag.Entry<E> entry) {
+			accept(entry.getElement(), entry.getCount());
+		}
+
+		CountHeap<E> merge(CountHeap<E> heap) {
+			for (int index = 0; index < heap.size; index++) {
+				accept((E)heap.elements[index], heap.counts[index]);
+			}
+
+			return this;
+		}
+
+		/**
+		 * Empties this heap into a new list, from the best to the worst entry.
+		 */
+		List<Bag.Entry<E>> toList() {
+			Bag.Entry<E>[] result = new Bag.Entry[size];
+
+			while (size > 0) {
+				result[size - 1] = new AbstractBag.SimpleImmutableEntry<>((E)elements[0], counts[0]);
+				size--;
+				elements[0] = elements[size];
+				counts[0] = counts[size];
+				elements[size] = null;
+				down(0);
+			}
+
+			return new ArrayList<>(Arrays.asList(result));
+		}
+
+		//miscellaneous
+		private boolean worse(int count, int other) {
+			return highest ? count < other : count > other;
+		}
+
+		private void up(int index) {
+			while (index > 0) {
+				int parent = (index - 1) >>> 1;
+
+				if (!worse(counts[index], counts[parent])) {
+					break;
+				}
+
+				swap(index, parent);
+				index = parent;
+			}
+		}
+
+		private void down(int index) {
+			for (int child = 2 * index + 1; child < size; child = 2 * index + 1) {
+				if (child + 1 < size && worse(counts[child + 1], counts[child])) {
+					child++;
+				}
+
+				if (!worse(counts[child], counts[index])) {
+					break;
+				}
+
+				swap(index, child);
+				index = child;
+			}
+		}
+
+		private void swap(int index, int other) {
+			Object element = elements[index];
+			elements[index] = elements[other];
+			elements[other] = element;
+			int count = counts[index];
+			counts[index] = counts[other];
+			counts[other] = count;
+		}
+	}
+
+	/**
+	 * Returns a new bag holding the occurrences of all the specified bags,
+	 * that is, the count of each element is the sum of its counts in the
+	 * specified bags. The result is built in a single pass over the entries
+	 * of each bag: it starts as a copy of the bag with most distinct
+	 * elements, into which the others are merged. The returned bag is a
+	 * {@link HashBag}.
+	 *
+	 * @param <E> the class of the elements in the bags
+	 * @param bags the bags to be summed
+	 * @return a new bag holding the sum of the specified bags
+	 * @throws NullPointerException if the specified array or any of its bags is null
+	 */
+	@SafeVarargs
+	public static <E> Bag<E> sum(Bag<? extends E>... bags) {
+		requireNonNull(bags, "Invalid null bags.");
+
+		Bag<? extends E> largest = null;
+
+		for (Bag<? extends E> bag : bags) {
+			requireNonNull(bag, "Invalid null bag.");
+
+			if (largest == null || bag.asEntrySet().size() > largest.asEntrySet().size()) {
+				largest = bag;
+			}
+		}
+
+		if (largest == null) {
+			return new HashBag<>();
+		}
+
+		HashBag<E> result = new HashBag<>(largest);
+
+		for (Bag<? extends E> bag : bags) {
+			if (bag != largest) {
+				result.addAll(bag);
+			}
+		}
+
+		return result;
+	}
+
+	//collectors
+	/**
+	 * Returns a {@code Collector} that accumulates the input elements into a
+	 * new {@link HashBag}. This is an {@link Collector.Characteristics#UNORDERED
+	 * unordered} collector. Partial results of a parallel reduction are merged
+	 * entry by entry, with a single update per distinct element.
+	 *
+	 * @param <E> the type of the input elements
+	 * @return a {@code Collector} which collects all the input elements
+	 *         into a bag
+	 */
+	public static <E> Collector<E, ?, Bag<E>> toBag() {
+		return Collector.of(HashBag::new, Bag::add, Bags::merge, Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Returns a {@code Collector} that accumulates the input elements into a
+	 * new bag, created by the provided factory, in encounter order. Partial
+	 * results of a parallel reduction are merged entry by entry, with a
+	 * single update per distinct element.
+	 *
+	 * @param <E> the type of the input elements
+	 * @param <B> the type of the resulting bag
+	 * @param factory a supplier providing a new empty bag
+	 *        into which the results will be inserted
+	 * @return a {@code Collector} which collects all the input elements
+	 *         into a bag
+	 * @throws NullPointerException if the specified factory is null
+	 */
+	public static <E, B extends Bag<E>> Collector<E, ?, B> toBag(Supplier<B> factory) {
+		requireNonNull(factory, "Invalid null factory.");
+		return Collector.of(factory, Bag::add, Bags::merge);
+	}
+
+	/**
+	 * Returns a {@code Collector} that accumulates weighted input elements
+	 * into a new {@link HashBag}: each input element adds to the bag the
+	 * number of occurrences given by the weigher of the element computed
+	 * by the classifier. This is useful to collect pre-aggregated inputs,
+	 * for example:
+	 *
+	 * <pre> {@code
+	 * Bag<String> words = lines.stream()
+	 *     .collect(Bags.toBag(line -> line.word, line -> line.frequency));
+	 * }</pre>
+	 *
+	 * <p>This is an {@link Collector.Characteristics#UNORDERED unordered}
+	 * collector.</p>
+	 *
+	 * @param <T> the type of the input elements
+	 * @param <E> the type of the elements of the resulting bag
+	 * @param classifier a function computing the element of the bag
+	 * @param weigher a function computing the number of occurrences of the
+	 *        element to be added, which must not be negative
+	 * @return a {@code Collector} which collects the weighted occurrences
+	 *         of the input elements into a bag
+	 * @throws NullPointerException if the specified classifier or weigher is null
+	 * @see #toBag(Function, ToIntFunction, Supplier)
+	 */
+	public static <T, E> Collector<T, ?, Bag<E>> toBag(Function<? super T, ? extends E> classifier, ToIntFunction<? super T> weigher) {
+		return Collector.of(HashBag::new, accumulator(classifier, weigher), Bags::merge, Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Returns a {@code Collector} that accumulates weighted input elements
+	 * into a new bag, created by the provided factory, in encounter order.
+	 * Each input element adds to the bag the number of occurrences given
+	 * by the weigher of the element computed by the classifier.
+	 *
+	 * @param <T> the type of the input elements
+	 * @param <E> the type of the elements of the resulting bag
+	 * @param <B> the type of the resulting bag
+	 * @param classifier a function computing the element of the bag
+	 * @param weigher a function computing the number of occurrences of the
+	 *        element to be added, which must not be negative
+	 * @param factory a supplier providing a new empty bag
+	 *        into which the results will be inserted
+	 * @return a {@code Collector} which collects the weighted occurrences
+	 *         of the input elements into a bag
+	 * @throws NullPointerException if the specified classifier,
+	 *         weigher or factory is null
+	 */
+	public static <T, E, B extends Bag<E>> Collector<T, ?, B> toBag(Function<? super T, ? extends E> classifier, ToIntFunction<? super T> weigher, Supplier<B> factory) {
+		requireNonNull(factory, "Invalid null factory.");
+		return Collector.of(factory, accumulator(classifier, weigher), Bags::merge);
+	}
+
+	/**
+	 * Returns a {@code Collector} that counts the input elements by the
+	 * element computed by the classifier, into a new {@link HashBag}. It is
+	 * the bag counterpart of the following collector, without boxing any
+	 * count:
+	 *
+	 * <pre> {@code
+	 * Collectors.groupingBy(classifier, Collectors.counting())
+	 * }</pre>
+	 *
+	 * <p>This is an {@link Collector.Characteristics#UNORDERED unordered}
+	 * collector.</p>
+	 *
+	 * @param <T> the type of the input elements
+	 * @param <E> the type of the elements of the resulting bag
+	 * @param classifier a function computing the element of the bag
+	 * @return a {@code Collector} which counts the input elements by
+	 *         their classification into a bag
+	 * @throws NullPointerException if the specified classifier is null
+	 */
+	public static <T, E> Collector<T, ?, Bag<E>> groupingCounting(Function<? super T, ? extends E> classifier) {
+		requireNonNull(classifier, "Invalid null classifier.");
+		return Collector.of(HashBag::new, (Bag<E> bag, T element) -> bag.add(classifier.apply(element)), Bags::merge, Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Returns a concurrent {@code Collector} that accumulates the input
+	 * elements into a new {@link ConcurrentHashBag}. This is an
+	 * {@link Collector.Characteristics#CONCURRENT concurrent} and
+	 * {@link Collector.Characteristics#UNORDERED unordered} collector, so a
+	 * parallel reduction updates a single bag from all threads instead of
+	 * merging partial results.
+	 *
+	 * @param <E> the type of the input elements
+	 * @return a concurrent, unordered {@code Collector} which collects
+	 *         all the input elements into a concurrent bag
+	 */
+	public static <E> Collector<E, ?, Bag<E>> toConcurrentBag() {
+		return Collector.of(ConcurrentHashBag::new, Bag::add, Bags::merge, Collector.Characteristics.CONCURRENT, Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Returns a concurrent {@code Collector} that accumulates weighted input
+	 * elements into a new {@link ConcurrentHashBag}, as
+	 * {@link #toBag(Function, ToIntFunction)} does. This is an
+	 * {@link Collector.Characteristics#CONCURRENT concurrent} and
+	 * {@link Collector.Characteristics#UNORDERED unordered} collector.
+	 *
+	 * @param <T> the type of the input elements
+	 * @param <E> the type of the elements of the resulting bag
+	 * @param classifier a function computing the element of the bag
+	 * @param weigher a function computing the number of occurrences of the
+	 *        element to be added, which must not be negative
+	 * @return a concurrent, unordered {@code Collector} which collects the
+	 *         weighted occurrences of the input elements into a concurrent bag
+	 * @throws NullPointerException if the specified classifier or weigher is null
+	 */
+	public static <T, E> Collector<T, ?, Bag<E>> toConcurrentBag(Function<? super T, ? extends E> classifier, ToIntFunction<? super T> weigher) {
+		return Collector.of(ConcurrentHashBag::new, accumulator(classifier, weigher), Bags::merge, Collector.Characteristics.CONCURRENT, Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Returns a {@code Collector} that adds the input elements to a new
+	 * {@link DistinctSketch} with the default precision, estimating the
+	 * number of distinct input elements without keeping them. This is an
+	 * {@link Collector.Characteristics#UNORDERED unordered} collector, and
+	 * the partial results of a parallel reduction are merged by
+	 * {@link DistinctSketch#union(DistinctSketch)}.
+	 *
+	 * @param <E> the type of the input elements
+	 * @return a {@code Collector} which adds all the input elements to a
+	 *         distinct sketch
+	 * @see Bag#distinctSketch()
+	 */
+	public static <E> Collector<E, ?, DistinctSketch<E>> distinctSketch() {
+		return distinctSketch(DistinctSketch.DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Returns a {@code Collector} that adds the input elements to a new
+	 * {@link DistinctSketch} with the specified precision, as
+	 * {@link #distinctSketch()} does.
+	 *
+	 * @param <E> the type of the input elements
+	 * @param precision the number of bits of the hash selecting a register
+	 *        of the sketch, from <tt>4</tt> to <tt>16</tt>
+	 * @return a {@code Collector} which adds all the input elements to a
+	 *         distinct sketch
+	 * @throws IllegalArgumentException if the precision is out of range
+	 * @see Bag#distinctSketch(int)
+	 */
+	public static <E> Collector<E, ?, DistinctSketch<E>> distinctSketch(int precision) {
+		DistinctSketch.check(precision);
+		return Collector.of(() -> new DistinctSketch<>(precision), DistinctSketch::add, DistinctSketch::union, Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Returns a {@code Collector} that adds the input elements to a new
+	 * {@link DistinctSketch} with the specified precision, which hashes them
+	 * with the specified function instead of their <tt>hashCode</tt>, as
+	 * {@link #distinctSketch()} does. It estimates the number of distinct
+	 * elements of streams with more than <tt>2<sup>32</sup></tt> of them.
+	 *
+	 * @param <E> the type of the input elements
+	 * @param precision the number of bits of the hash selecting a register
+	 *        of the sketch, from <tt>4</tt> to <tt>16</tt>
+	 * @param hasher the 64-bit hash function of the input elements
+	 * @return a {@code Collector} which adds all the input elements to a
+	 *         distinct sketch
+	 * @throws NullPointerException if the hash function is null
+	 * @throws IllegalArgumentException if the precision is out of range
+	 * @see DistinctSketch#DistinctSketch(int, ToLongFunction)
+	 */
+	public static <E> Collector<E, ?, DistinctSketch<E>> distinctSketch(int precision, ToLongFunction<? super E> hasher) {
+		DistinctSketch.check(precision);
+		requireNonNull(hasher, "Invalid null hasher.");
+		return Collector.of(() -> new DistinctSketch<>(precision, hasher), DistinctSketch::add, DistinctSketch::union, Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Returns the accumulator of the weighted collectors.
+	 */
+	private static <T, E, B extends Bag<E>> BiConsumer<B, T> accumulator(Function<? super T, ? extends E> classifier, ToIntFunction<? super T> weigher) {
+		requireNonNull(classifier, "Invalid null classifier.");
+		requireNonNull(weigher, "Invalid null weigher.");
+
+		return (bag, element) -> {
+			int weight = weigher.applyAsInt(element);
+
+			if (weight < 0) {
+				throw new IllegalArgumentException("Invalid negative weight: " + weight + ".");
+			}
+
+			bag.put(classifier.apply(element), weight);
+		};
+	}
+
+	/**
+	 * Combines two partial results of a collector, merging the
+	 * entries of the right bag into the left one.
+	 */
+	private static <E, B extends Bag<E>> B merge(B left, B right) {
+		left.addAll(right);
+		return left;
+	}
+
+	//synchronized wrappers
+	/**
+	 * Returns a synchronized (thread-safe) bag backed by the specified
+	 * bag. In order to guarantee serial access, it is critical that
+	 * <strong>all</strong> access to the backing bag is accomplished
+	 * through the returned bag.
+	 *
+	 * <p>It is imperative that the user manually synchronize on the returned
+	 * bag when traversing it, or its <tt>asElementSet</tt> and
+	 * <tt>asEntrySet</tt> views, via {@link Iterator}, {@link Spliterator}
+	 * or {@link java.util.stream.Stream}:</p>
+	 *
+	 * <pre>
+	 *  Bag b = Bags.synchronizedBag(new HashBag());
+	 *      ...
+	 *  synchronized (b) {
+	 *      Iterator i = b.iterator(); // Must be in the synchronized block
+	 *      while (i.hasNext())
+	 *          foo(i.next());
+	 *  }
+	 * </pre>
+	 *
+	 * <p>Failure to follow this advice may result in non-deterministic
+	 * behavior. The returned bag will be serializable if the specified
+	 * bag is serializable.</p>
+	 *
+	 * @param <E> the class of the elements in the bag
+	 * @param bag the bag to be "wrapped" in a synchronized bag
+	 * @return a synchronized view of the specified bag
+	 */
+	public static <E> Bag<E> synchronizedBag(Bag<E> bag) {
+		return new SynchronizedBag<>(bag);
+	}
+
+	/**
+	 * Returns a synchronized (thread-safe) sorted bag backed by the
+	 * specified sorted bag. The same rules of {@link #synchronizedBag(Bag)}
+	 * apply, and also to the <tt>subBag</tt>, <tt>headBag</tt> and
+	 * <tt>tailBag</tt> views, which must be traversed while holding the
+	 * lock of the returned bag, not of the view.
+	 *
+	 * @param <E> the class of the elements in the bag
+	 * @param bag the sorted bag to be "wrapped" in a synchronized sorted bag
+	 * @return a synchronized view of the specified sorted bag
+	 */
+	public static <E> SortedBag<E> synchronizedSortedBag(SortedBag<E> bag) {
+		return new SynchronizedSortedBag<>(bag);
+	}
+
+	/**
+	 * Returns a synchronized (thread-safe) navigable bag backed by the
+	 * specified navigable bag. The same rules of
+	 * {@link #synchronizedSortedBag(SortedBag)} apply, and also to the
+	 * <tt>descendingIterator</tt> method and <tt>descendingBag</tt> view.
+	 *
+	 * @param <E> the class of the elements in the bag
+	 * @param bag the navigable bag to be "wrapped" in a synchronized navigable bag
+	 * @return a synchronized view of the specified navigable bag
+	 */
+	public static <E> NavigableBag<E> synchronizedNavigableBag(NavigableBag<E> bag) {
+		return new SynchronizedNavigableBag<>(bag);
+	}
+
+	static class SynchronizedCollection<E> implements Collection<E>, Serializable {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		final Collection<E> collection;
+		final Object mutex;
+
+		//constructors
+		SynchronizedCollection(Collection<E> collection) {
+			this.collection = requireNonNull(collection, "Invalid null collection.");
+			this.mutex = this;
+		}
+
+		SynchronizedCollection(Collection<E> collection, Object mutex) {
+			this.collection = requireNonNull(collection, "Invalid null collection.");
+			this.mutex = requireNonNull(mutex, "Invalid null mutex.");
+		}
+
+		//collection behaviour
+		@Override
+		public int size() {
+			synchronized (mutex) {return collection.size();}
+		}
+
+		@Override
+		public boolean isEmpty() {
+			synchronized (mutex) {return collection.isEmpty();}
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			synchronized (mutex) {return collection.contains(object);}
+		}
+
+		@Override
+		public Object[] toArray() {
+			synchronized (mutex) {return collection.toArray();}
+		}
+
+		@Override
+		public <T> T[] toArray(T[] array) {
+			synchronized (mutex) {return collection.toArray(array);}
+		}
+
+		/**
+		 * Must be manually synchronized by the user.
+		 */
+		@Override
+		public Iterator<E> iterator() {
+			return collection.iterator();
+		}
+
+		@Override
+		public boolean add(E element) {
+			synchronized (mutex) {return collection.add(element);}
+		}
+
+		@Override
+		public boolean remove(Object object) {
+			synchronized (mutex) {return collection.remove(object);}
+		}
+
+		@Override
+		public boolean containsAll(Collection<?> collection) {
+			synchronized (mutex) {return this.collection.containsAll(collection);}
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends E> collection) {
+			synchronized (mutex) {return this.collection.addAll(collection);}
+		}
+
+		@Override
+		public boolean removeAll(Collection<?> collection) {
+			synchronized (mutex) {return this.collection.removeAll(collection);}
+		}
+
+		@Override
+		public boolean retainAll(Collection<?> collection) {
+			synchronized (mutex) {return this.collection.retainAll(collection);}
+		}
+
+		@Override
+		public void clear() {
+			synchronized (mutex) {collection.clear();}
+		}
+
+		@Override
+		public void forEach(Consumer<? super E> action) {
+			synchronized (mutex) {collection.forEach(action);}
+		}
+
+		@Override
+		public boolean removeIf(Predicate<? super E> filter) {
+			synchronized (mutex) {return collection.removeIf(filter);}
+		}
+
+		/**
+		 * Must be manually synchronized by the user.
+		 */
+		@Override
+		public Spliterator<E> spliterator() {
+			return collection.spliterator();
+		}
+
+		//object behaviour
+		@Override
+		public String toString() {
+			synchronized (mutex) {return collection.toString();}
+		}
+
+		//serializable behaviour
+		private void writeObject(ObjectOutputStream output) throws IOException {
+			synchronized (mutex) {output.defaultWriteObject();}
+		}
+	}
+
+	static class SynchronizedSet<E> extends SynchronizedCollection<E> implements Set<E> {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//constructors
+		SynchronizedSet(Set<E> set, Object mutex) {
+			super(set, mutex);
+		}
+
+		//object behaviour
+		@Override
+		public int hashCode() {
+			synchronized (mutex) {return collection.hashCode();}
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+
+			synchronized (mutex) {return collection.equals(object);}
+		}
+	}
+
+	static class SynchronizedBag<E> extends SynchronizedCollection<E> implements Bag<E> {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		private final Bag<E> bag;
+
+		//mutable state
+		private transient Set<E> elements;
+		private transient Set<Entry<E>> entries;
+
+		//constructors
+		SynchronizedBag(Bag<E> bag) {
+			super(bag);
+			this.bag = bag;
+		}
+
+		SynchronizedBag(Bag<E> bag, Object mutex) {
+			super(bag, mutex);
+			this.bag = bag;
+		}
+
+		//bag behaviour
+		@Override
+		public int count(Object object) {
+			synchronized (mutex) {return bag.count(object);}
+		}
+
+		@Override
+		public Set<E> asElementSet() {
+			synchronized (mutex) {
+				if (elements == null) {
+					elements = new SynchronizedSet<>(bag.asElementSet(), mutex);
+				}
+
+				return elements;
+			}
+		}
+
+		@Override
+		public Set<Entry<E>> asEntrySet() {
+			synchronized (mutex) {
+				if (entries == null) {
+					entries = new SynchronizedSet<>(bag.asEntrySet(), mutex);
+				}
+
+				return entries;
+			}
+		}
+
+		@Override
+		public Set<E> toSet(Supplier<Set<E>> factory) {
+			synchronized (mutex) {return bag.toSet(factory);}
+		}
+
+		@Override
+		public Map<E, Integer> toMap(Supplier<Map<E, Integer>> factory) {
+			synchronized (mutex) {return bag.toMap(factory);}
+		}
+
+		@Override
+		public int put(E element, int amount) {
+			synchronized (mutex) {return bag.put(element, amount);}
+		}
+
+		@Override
+		public int set(E element, int count) {
+			synchronized (mutex) {return bag.set(element, count);}
+		}
+
+		@Override
+		public int delete(Object object) {
+			synchronized (mutex) {return bag.delete(object);}
+		}
+
+		@Override
+		public int merge(E element, int count, IntBinaryOperator function) {
+			synchronized (mutex) {return bag.merge(element, count, function);}
+		}
+
+		@Override
+		public int compute(E element, ObjIntToIntFunction<? super E> function) {
+			synchronized (mutex) {return bag.compute(element, function);}
+		}
+
+		@Override
+		public void forEachEntry(ObjIntConsumer<? super E> action) {
+			synchronized (mutex) {bag.forEachEntry(action);}
+		}
+
+		/**
+		 * Must be manually synchronized by the user.
+		 */
+		@Override
+		public Stream<Entry<E>> entryStream() {
+			return bag.entryStream();
+		}
+
+		/**
+		 * Must be manually synchronized by the user.
+		 */
+		@Override
+		public IntStream counts() {
+			return bag.counts();
+		}
+
+		@Override
+		public E sample(Random random) {
+			synchronized (mutex) {return bag.sample(random);}
+		}
+
+		/**
+		 * The occurrences are drawn from the contents of the backing bag
+		 * when this method is called, taken while holding the mutex.
+		 */
+		@Override
+		public Stream<E> sample(Random random, long size, boolean replacement) {
+			synchronized (mutex) {return bag.sample(random, size, replacement);}
+		}
+
+		@Override
+		public boolean addIf(Predicate<? super E> filter) {
+			synchronized (mutex) {return bag.addIf(filter);}
+		}
+
+		@Override
+		public boolean putIf(Predicate<? super E> filter, int amount) {
+			synchronized (mutex) {return bag.putIf(filter, amount);}
+		}
+
+		@Override
+		public boolean setIf(Predicate<? super E> filter, int count) {
+			synchronized (mutex) {return bag.setIf(filter, count);}
+		}
+
+		//object behaviour
+		@Override
+		public int hashCode() {
+			synchronized (mutex) {return bag.hashCode();}
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+
+			synchronized (mutex) {return bag.equals(object);}
+		}
+	}
+
+	static class SynchronizedSortedBag<E> extends SynchronizedBag<E> implements SortedBag<E> {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		private final SortedBag<E> bag;
+
+		//constructors
+		SynchronizedSortedBag(SortedBag<E> bag) {
+			super(bag);
+			this.bag = bag;
+		}
+
+		SynchronizedSortedBag(SortedBag<E> bag, Object mutex) {
+			super(bag, mutex);
+			this.bag = bag;
+		}
+
+		//sorted bag behaviour
+		@Override
+		public Comparator<? super E> comparator() {
+			synchronized (mutex) {return bag.comparator();}
+		}
+
+		@Override
+		public SortedBag<E> subBag(E fromElement, E toElement) {
+			synchronized (mutex) {return new SynchronizedSortedBag<>(bag.subBag(fromElement, toElement), mutex);}
+		}
+
+		@Override
+		public SortedBag<E> headBag(E toElement) {
+			synchronized (mutex) {return new SynchronizedSortedBag<>(bag.headBag(toElement), mutex);}
+		}
+
+		@Override
+		public SortedBag<E> tailBag(E fromElement) {
+			synchronized (mutex) {return new SynchronizedSortedBag<>(bag.tailBag(fromElement), mutex);}
+		}
+
+		@Override
+		public E first() {
+			synchronized (mutex) {return bag.first();}
+		}
+
+		@Override
+		public E last() {
+			synchronized (mutex) {return bag.last();}
+		}
+
+		/**
+		 * Must be manually synchronized by the user.
+		 */
+		@Override
+		public Spliterator<E> spliterator() {
+			return bag.spliterator();
+		}
 	}
 
-	public static Bag synchronizedBag() {
-		return null;
+	static class SynchronizedNavigableBag<E> extends SynchronizedSortedBag<E> implements NavigableBag<E> {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		private final NavigableBag<E> bag;
+
+		//constructors
+		SynchronizedNavigableBag(NavigableBag<E> bag) {
+			super(bag);
+			this.bag = bag;
+		}
+
+		SynchronizedNavigableBag(NavigableBag<E> bag, Object mutex) {
+			super(bag, mutex);
+			this.bag = bag;
+		}
+
+		//navigable bag behaviour
+		@Override
+		public E lower(E element) {
+			synchronized (mutex) {return bag.lower(element);}
+		}
+
+		@Override
+		public E floor(E element) {
+			synchronized (mutex) {return bag.floor(element);}
+		}
+
+		@Override
+		public E ceiling(E element) {
+			synchronized (mutex) {return bag.ceiling(element);}
+		}
+
+		@Override
+		public E higher(E element) {
+			synchronized (mutex) {return bag.higher(element);}
+		}
+
+		@Override
+		public E pollFirst() {
+			synchronized (mutex) {return bag.pollFirst();}
+		}
+
+		@Override
+		public E pollLast() {
+			synchronized (mutex) {return bag.pollLast();}
+		}
+
+		/**
+		 * Must be manually synchronized by the user.
+		 */
+		@Override
+		public Iterator<E> descendingIterator() {
+			return bag.descendingIterator();
+		}
+
+		@Override
+		public NavigableBag<E> descendingBag() {
+			synchronized (mutex) {return new SynchronizedNavigableBag<>(bag.descendingBag(), mutex);}
+		}
+
+		@Override
+		public NavigableBag<E> subBag(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+			synchronized (mutex) {return new SynchronizedNavigableBag<>(bag.subBag(fromElement, fromInclusive, toElement, toInclusive), mutex);}
+		}
+
+		@Override
+		public NavigableBag<E> headBag(E toElement, boolean inclusive) {
+			synchronized (mutex) {return new SynchronizedNavigableBag<>(bag.headBag(toElement, inclusive), mutex);}
+		}
+
+		@Override
+		public NavigableBag<E> tailBag(E fromElement, boolean inclusive) {
+			synchronized (mutex) {return new SynchronizedNavigableBag<>(bag.tailBag(fromElement, inclusive), mutex);}
+		}
+
+		@Override
+		public SortedBag<E> subBag(E fromElement, E toElement) {
+			return subBag(fromElement, true, toElement, false);
+		}
+
+		@Override
+		public SortedBag<E> headBag(E toElement) {
+			return headBag(toElement, false);
+		}
+
+		@Override
+		public SortedBag<E> tailBag(E fromElement) {
+			return tailBag(fromElement, true);
+		}
+	}
+
+	//read-write locked wrappers
+	/**
+	 * Returns a thread-safe bag backed by the specified bag and guarded by
+	 * a {@link ReentrantReadWriteLock}. Query operations, such as
+	 * <tt>count</tt>, <tt>contains</tt> and <tt>size</tt>, only take the
+	 * read lock, so they run in parallel and never block each other; update
+	 * operations take the write lock. In order to guarantee consistent
+	 * access, it is critical that <strong>all</strong> access to the backing
+	 * bag is accomplished through the returned bag.
+	 *
+	 * <p>Unlike {@link #synchronizedBag(Bag)}, no manual locking is needed to
+	 * traverse the returned bag: its iterators, spliterators and streams,
+	 * as well as those of its <tt>asElementSet</tt> and <tt>asEntrySet</tt>
+	 * views, traverse a snapshot taken under the read lock. The snapshot of
+	 * the returned bag holds its entries, not its occurrences, so it takes
+	 * space linear in the number of distinct elements. The <tt>remove</tt>
+	 * method of these iterators updates the backing bag under the write
+	 * lock. The entries of the <tt>asEntrySet</tt> view delegate to the
+	 * returned bag.</p>
+	 *
+	 * <p>The query operations of the specified bag run concurrently under
+	 * the read lock, so they must not modify it, unless what they modify is
+	 * safely published between threads. The bags of this package which
+	 * cache state on a query, such as the sampling index of a hash bag or
+	 * the size of a tree bag's range view, publish it safely.</p>
+	 *
+	 * <p>The returned bag will be serializable if the specified bag is
+	 * serializable.</p>
+	 *
+	 * @param <E> the class of the elements in the bag
+	 * @param bag the bag to be "wrapped" in a read-write locked bag
+	 * @return a read-write locked view of the specified bag
+	 */
+	public static <E> Bag<E> readWriteLockedBag(Bag<E> bag) {
+		return new ReadWriteLockedBag<>(bag);
+	}
+
+	static class ReadWriteLockedCollection<E> implements Collection<E>, Serializable {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		final Collection<E> collection;
+		final ReadWriteLock lock;
+
+		//constructors
+		ReadWriteLockedCollection(Collection<E> collection, ReadWriteLock lock) {
+			this.collection = requireNonNull(collection, "Invalid null collection.");
+			this.lock = requireNonNull(lock, "Invalid null lock.");
+		}
+
+		//collection behaviour
+		@Override
+		public int size() {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return collection.size();
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public boolean isEmpty() {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return collection.isEmpty();
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return collection.contains(object);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public Object[] toArray() {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return collection.toArray();
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public <T> T[] toArray(T[] array) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return collection.toArray(array);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		/**
+		 * Returns an iterator over a snapshot of the backing collection.
+		 * Its <tt>remove</tt> method removes the last element returned
+		 * from the backing collection.
+		 */
+		@Override
+		public Iterator<E> iterator() {
+			return new Iterator<E>() {
+				//immutable state
+				private final Object[] snapshot = toArray();
+
+				//mutable state
+				private int cursor = 0;
+				private boolean removable = false;
+
+				//iterator behaviour
+				@Override
+				public boolean hasNext() {
+					return cursor < snapshot.length;
+				}
+
+				@Override
+				public E next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException("Iteration has no more elements.");
+					}
+
+					removable = true;
+					return wrap((E)snapshot[cursor++]);
+				}
+
+				@Override
+				public void remove() {
+					if (!removable) {
+						throw new IllegalStateException("The iterator.next() method has not yet been called, or the iterator.remove() method has already been called after the last call to the iterator.next() method.");
+					}
+
+					removable = false;
+					unwrap((E)snapshot[cursor - 1]);
+				}
+			};
+		}
+
+		@Override
+		public boolean add(E element) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return collection.add(element);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public boolean remove(Object object) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return collection.remove(object);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public boolean containsAll(Collection<?> collection) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return this.collection.containsAll(collection);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends E> collection) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return this.collection.addAll(collection);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public boolean removeAll(Collection<?> collection) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return this.collection.removeAll(collection);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public boolean retainAll(Collection<?> collection) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return this.collection.retainAll(collection);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public void clear() {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				collection.clear();
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public void forEach(Consumer<? super E> action) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				collection.forEach(action);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public boolean removeIf(Predicate<? super E> filter) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return collection.removeIf(filter);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		/**
+		 * Returns a spliterator over a snapshot of the backing collection.
+		 */
+		@Override
+		public Spliterator<E> spliterator() {
+			return Spliterators.spliterator(toArray(), Spliterator.IMMUTABLE);
+		}
+
+		//object behaviour
+		@Override
+		public String toString() {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return collection.toString();
+			} finally {
+				read.unlock();
+			}
+		}
+
+		//serializable behaviour
+		private void writeObject(ObjectOutputStream output) throws IOException {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				output.defaultWriteObject();
+			} finally {
+				read.unlock();
+			}
+		}
+
+		//miscellaneous
+		/**
+		 * Wraps an element returned by the iterator, so that it can be
+		 * safely used after the read lock is released.
+		 */
+		E wrap(E element) {
+			return element;
+		}
+
+		/**
+		 * Removes an element returned by the iterator from the
+		 * backing collection.
+		 */
+		void unwrap(E element) {
+			remove(element);
+		}
+	}
+
+	static class ReadWriteLockedSet<E> extends ReadWriteLockedCollection<E> implements Set<E> {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//constructors
+		ReadWriteLockedSet(Set<E> set, ReadWriteLock lock) {
+			super(set, lock);
+		}
+
+		//object behaviour
+		@Override
+		public int hashCode() {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return collection.hashCode();
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return collection.equals(object);
+			} finally {
+				read.unlock();
+			}
+		}
+	}
+
+	static class ReadWriteLockedBag<E> extends ReadWriteLockedCollection<E> implements Bag<E> {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		private final Bag<E> bag;
+
+		//mutable state
+		private transient volatile Set<E> elements;
+		private transient volatile Set<Entry<E>> entries;
+
+		//constructors
+		ReadWriteLockedBag(Bag<E> bag) {
+			super(bag, new ReentrantReadWriteLock());
+			this.bag = bag;
+		}
+
+		//bag behaviour
+		@Override
+		public int count(Object object) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return bag.count(object);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public Set<E> asElementSet() {
+			if (elements == null) {
+				elements = new ReadWriteLockedSet<>(bag.asElementSet(), lock);
+			}
+
+			return elements;
+		}
+
+		@Override
+		public Set<Entry<E>> asEntrySet() {
+			if (entries == null) {
+				entries = new ReadWriteLockedSet<Entry<E>>(bag.asEntrySet(), lock) {
+					//static state
+					private static final long serialVersionUID = -1L;
+
+					//miscellaneous
+					@Override
+					Entry<E> wrap(Entry<E> entry) {
+						//the snapshot holds the entries of the backing bag, which must not escape the lock
+						return new ReadWriteLockedEntry<>(ReadWriteLockedBag.this, entry.getElement());
+					}
+
+					@Override
+					void unwrap(Entry<E> entry) {
+						delete(entry.getElement());
+					}
+				};
+			}
+
+			return entries;
+		}
+
+		@Override
+		public Set<E> toSet(Supplier<Set<E>> factory) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return bag.toSet(factory);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public Map<E, Integer> toMap(Supplier<Map<E, Integer>> factory) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return bag.toMap(factory);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public int put(E element, int amount) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return bag.put(element, amount);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public int set(E element, int count) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return bag.set(element, count);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public int delete(Object object) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return bag.delete(object);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public int merge(E element, int count, IntBinaryOperator function) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return bag.merge(element, count, function);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public int compute(E element, ObjIntToIntFunction<? super E> function) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return bag.compute(element, function);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		/**
+		 * Returns an iterator over a snapshot of the entries of the backing
+		 * bag, taken under the read lock, which returns each element as many
+		 * times as its count. Its <tt>remove</tt> method removes an
+		 * occurrence of the last element returned from the backing bag.
+		 */
+		@Override
+		public Iterator<E> iterator() {
+			return new Iterator<E>() {
+				//immutable state
+				private final ReadWriteLockedOccurrences<E> snapshot = snapshot();
+
+				//mutable state
+				private E last;
+				private boolean removable = false;
+
+				//iterator behaviour
+				@Override
+				public boolean hasNext() {
+					return snapshot.estimateSize() > 0;
+				}
+
+				@Override
+				public E next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException("Iteration has no more elements.");
+					}
+
+					removable = true;
+					last = snapshot.next();
+					return last;
+				}
+
+				@Override
+				public void remove() {
+					if (!removable) {
+						throw new IllegalStateException("The iterator.next() method has not yet been called, or the iterator.remove() method has already been called after the last call to the iterator.next() method.");
+					}
+
+					removable = false;
+					ReadWriteLockedBag.this.remove(last);
+				}
+			};
+		}
+
+		/**
+		 * Returns a spliterator over a snapshot of the entries of the backing
+		 * bag, taken under the read lock, which splits between entries.
+		 */
+		@Override
+		public Spliterator<E> spliterator() {
+			return snapshot();
+		}
+
+		@Override
+		public void forEachEntry(ObjIntConsumer<? super E> action) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				bag.forEachEntry(action);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		/**
+		 * Returns a stream over a snapshot of the entries of the backing
+		 * bag, taken under the read lock.
+		 */
+		@Override
+		public Stream<Entry<E>> entryStream() {
+			List<Entry<E>> snapshot = new ArrayList<>();
+			forEachEntry((element, count) -> snapshot.add(new AbstractBag.SimpleImmutableEntry<>(element, count)));
+			return snapshot.stream();
+		}
+
+		/**
+		 * Returns a stream over a snapshot of the counts of the backing
+		 * bag, taken under the read lock.
+		 */
+		@Override
+		public IntStream counts() {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return IntStream.of(bag.counts().toArray());
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public E sample(Random random) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return bag.sample(random);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		/**
+		 * The occurrences are drawn from the contents of the backing bag
+		 * when this method is called, taken under the read lock.
+		 */
+		@Override
+		public Stream<E> sample(Random random, long size, boolean replacement) {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return bag.sample(random, size, replacement);
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public boolean addIf(Predicate<? super E> filter) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return bag.addIf(filter);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public boolean putIf(Predicate<? super E> filter, int amount) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return bag.putIf(filter, amount);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		@Override
+		public boolean setIf(Predicate<? super E> filter, int count) {
+			Lock write = lock.writeLock();
+			write.lock();
+			try {
+				return bag.setIf(filter, count);
+			} finally {
+				write.unlock();
+			}
+		}
+
+		//miscellaneous
+		/**
+		 * Returns the occurrences of the entries of the backing bag, read
+		 * under the read lock.
+		 */
+		private ReadWriteLockedOccurrences<E> snapshot() {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				ReadWriteLockedOccurrences<E> snapshot = new ReadWriteLockedOccurrences<>(bag.asEntrySet().size());
+				bag.forEachEntry(snapshot::add);
+				return snapshot;
+			} finally {
+				read.unlock();
+			}
+		}
+
+		//object behaviour
+		@Override
+		public int hashCode() {
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return bag.hashCode();
+			} finally {
+				read.unlock();
+			}
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (this == object) {
+				return true;
+			}
+
+			Lock read = lock.readLock();
+			read.lock();
+			try {
+				return bag.equals(object);
+			} finally {
+				read.unlock();
+			}
+		}
+	}
+
+	/**
+	 * An entry of a read-write locked bag, which reads and writes
+	 * the count of its element through the bag.
+	 */
+	static final class ReadWriteLockedEntry<E> implements Bag.Entry<E> {
+		//immutable state
+		private final Bag<E> bag;
+		private final E element;
+
+		//constructors
+		ReadWriteLockedEntry(Bag<E> bag, E element) {
+			this.bag = bag;
+			this.element = element;
+		}
+
+		//entry behaviour
+		@Override
+		public E getElement() {
+			return element;
+		}
+
+		@Override
+		public int getCount() {
+			return bag.count(element);
+		}
+
+		@Override
+		public int setCount(int count) {
+			if (count < 1) {
+				throw new IllegalArgumentException("Invalid count value for entry: " + toString() + ".");
+			}
+
+			return bag.set(element, count);
+		}
+
+		//object behaviour
+		@Override
+		public int hashCode() {
+			return (element == null ? 0 : element.hashCode()) ^ getCount();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			return object == this || (
+				object instanceof Bag.Entry
+				&& (element == null ? ((Bag.Entry<?>)object).getElement() == null : element.equals(((Bag.Entry<?>)object).getElement()))
+				&& getCount() == ((Bag.Entry<?>)object).getCount()
+			);
+		}
+
+		@Override
+		public String toString() {
+			return element + "=" + getCount();
+		}
+	}
+
+	/**
+	 * Occurrences of a snapshot of the entries of a read-write locked bag,
+	 * which holds each distinct element once along with the number of
+	 * occurrences before it, and returns it as many times as its count.
+	 */
+	static final class ReadWriteLockedOccurrences<E> implements Spliterator<E> {
+		//immutable state
+		private final Object[] elements;
+		private final long[] bounds;
+
+		//mutable state
+		private int index = 0;
+		private int fence = 0;
+		private long position = 0;
+
+		//constructors
+		ReadWriteLockedOccurrences(int distinct) {
+			this.elements = new Object[distinct];
+			this.bounds = new long[distinct + 1];
+		}
+
+		private ReadWriteLockedOccurrences(Object[] elements, long[] bounds, int index, int fence, long position) {
+			this.elements = elements;
+			this.bounds = bounds;
+			this.index = index;
+			this.fence = fence;
+			this.position = position;
+		}
+
+		//spliterator behaviour
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			requireNonNull(action, "Invalid null action.");
+
+			if (position >= bounds[fence]) {
+				return false;
+			}
+
+			action.accept(next());
+			return true;
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			int middle = (index + fence) >>> 1;
+
+			if (middle <= index) {
+				return null;
+			}
+
+			ReadWriteLockedOccurrences<E> prefix = new ReadWriteLockedOccurrences<>(elements, bounds, index, middle, position);
+			index = middle;
+			position = bounds[middle];
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return bounds[fence] - position;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+		}
+
+		//miscellaneous
+		/**
+		 * Appends an entry to the snapshot, while it is taken.
+		 */
+		void add(E element, int count) {
+			elements[fence] = element;
+			bounds[fence + 1] = bounds[fence] + count;
+			fence++;
+		}
+
+		/**
+		 * Returns the next occurrence, which must exist.
+		 */
+		E next() {
+			while (bounds[index + 1] <= position) {
+				index++;
+			}
+
+			position++;
+			return (E)elements[index];
+		}
 	}
 }
@@ -0,0 +1,100 @@
+package collection.bag;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe implementation of the <tt>Bag</tt> interface, backed by a
+ * {@link ConcurrentHashMap}. Updates to the count of an element are
+ * lock-free, and the size of the bag is kept in a {@link LongAdder}, so
+ * threads adding and removing elements concurrently do not serialize on
+ * a single lock. This bag does not permit <tt>null</tt> elements.
+ *
+ * <p>Iterators and views are weakly consistent: they never throw
+ * {@link java.util.ConcurrentModificationException}, and they may or may
+ * not show the effects of modifications made after their creation. Bulk
+ * operations such as <tt>addAll</tt> and <tt>clear</tt> are not atomic.</p>
+ *
+ * @param <E> the type of elements maintained by this bag
+ *
+ * @author Thiago Reis
+ * @see Bag
+ * @see HashBag
+ * @see ConcurrentHashMap
+ * @since 1.0
+ */
+public class ConcurrentHashBag<E> extends AbstractConcurrentMapBag<E> implements Bag<E>, Serializable {
+	//static state
+	private static final long serialVersionUID = -1L;
+
+	//constructors
+	public ConcurrentHashBag() {
+		map = new ConcurrentHashMap<>();
+		occurrences = new LongAdder();
+	}
+
+	public ConcurrentHashBag(int initialCapacity) {
+		map = new ConcurrentHashMap<>(initialCapacity);
+		occurrences = new LongAdder();
+	}
+
+	public ConcurrentHashBag(int initialCapacity, float loadFactor, int concurrencyLevel) {
+		map = new ConcurrentHashMap<>(initialCapacity, loadFactor, concurrencyLevel);
+		occurrences = new LongAdder();
+	}
+
+	public ConcurrentHashBag(Collection<? extends E> collection) {
+		Objects.requireNonNull(collection, "Invalid null collection.");
+
+		map = new ConcurrentHashMap<>(Math.max(collection instanceof Bag ? ((Bag)collection).asEntrySet().size() : collection.size(), 16));
+		occurrences = new LongAdder();
+		addAll(collection);
+	}
+
+	public ConcurrentHashBag(Map<? extends E, ? extends Number> map) {
+		Objects.requireNonNull(map, "Invalid null map.");
+
+		this.map = new ConcurrentHashMap<>(Math.max(map.size(), 16));
+		this.occurrences = new LongAdder();
+
+		for (Map.Entry<? extends E, ? extends Number> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue().intValue());
+		}
+	}
+
+	//serializable behaviour
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+
+		for (Map.Entry<E, AtomicInteger> entry : map.entrySet()) {
+			int count = entry.getValue().get();
+
+			if (count > 0) {
+				output.writeObject(entry.getKey());
+				output.writeInt(count);
+			}
+		}
+
+		//null elements are not permitted, so null marks the end
+		output.writeObject(null);
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+
+		map = new ConcurrentHashMap<>();
+		occurrences = new LongAdder();
+
+		for (E element; (element = (E)input.readObject()) != null;) {
+			put(element, input.readInt());
+		}
+	}
+}
@@ -0,0 +1,332 @@
+package collection.bag;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe implementation of the <tt>NavigableBag</tt> interface,
+ * backed by a {@link ConcurrentSkipListMap}. The elements are kept sorted
+ * according to their natural ordering, or by a comparator provided at
+ * creation time. Updates to the count of an element are lock-free, as are
+ * the navigation methods, and this bag does not permit <tt>null</tt>
+ * elements.
+ *
+ * <p>The <tt>pollFirst</tt> and <tt>pollLast</tt> methods remove exactly
+ * one occurrence atomically: concurrent callers never return the same
+ * occurrence twice. The views returned by <tt>subBag</tt>, <tt>headBag</tt>,
+ * <tt>tailBag</tt> and <tt>descendingBag</tt> are concurrent as well, and
+ * write through to this bag.</p>
+ *
+ * <p>Iterators and views are weakly consistent: they never throw
+ * {@link java.util.ConcurrentModificationException}, and they may or may
+ * not show the effects of modifications made after their creation. The
+ * <tt>size</tt> method of a view is not constant-time, as it counts the
+ * occurrences within its range.</p>
+ *
+ * @param <E> the type of elements maintained by this bag
+ *
+ * @author Thiago Reis
+ * @see NavigableBag
+ * @see TreeBag
+ * @see ConcurrentSkipListMap
+ * @since 1.0
+ */
+public class ConcurrentSkipListBag<E> extends AbstractConcurrentMapBag<E> implements NavigableBag<E>, Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+
+	//mutable state
+	/**
+	 * Whether this bag is a range or descending view of another bag,
+	 * in which case <tt>occurrences</tt> is shared and covers more
+	 * elements than this bag holds.
+	 */
+	private transient boolean view;
+
+	//constructors
+	private ConcurrentSkipListBag(ConcurrentNavigableMap<E, AtomicInteger> map, LongAdder occurrences) {
+		this.map = map;
+		this.occurrences = occurrences;
+		this.view = true;
+	}
+
+	public ConcurrentSkipListBag() {
+		map = new ConcurrentSkipListMap<>();
+		occurrences = new LongAdder();
+	}
+
+	public ConcurrentSkipListBag(Comparator<? super E> comparator) {
+		map = new ConcurrentSkipListMap<>(Objects.requireNonNull(comparator, "Invalid null comparator."));
+		occurrences = new LongAdder();
+	}
+
+	public ConcurrentSkipListBag(Collection<? extends E> collection) {
+		Objects.requireNonNull(collection, "Invalid null collection.");
+
+		map = new ConcurrentSkipListMap<>();
+		occurrences = new LongAdder();
+		addAll(collection);
+	}
+
+	public ConcurrentSkipListBag(Map<? extends E, ? extends Number> map) {
+		Objects.requireNonNull(map, "Invalid null map.");
+
+		this.map = new ConcurrentSkipListMap<>();
+		this.occurrences = new LongAdder();
+
+		for (Map.Entry<? extends E, ? extends Number> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue().intValue());
+		}
+	}
+
+	public ConcurrentSkipListBag(SortedBag<E> bag) {
+		Objects.requireNonNull(bag, "Invalid null bag.");
+
+		map = (bag.comparator() == null ? new ConcurrentSkipListMap<>() : new ConcurrentSkipListMap<>(bag.comparator()));
+		occurrences = new LongAdder();
+		addAll(bag);
+	}
+
+	//bag behaviour
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>For views, this method traverses the elements within
+	 * the range, so it is not a constant-time operation.</p>
+	 */
+	@Override
+	public int size() {
+		if (!view) {
+			return super.size();
+		}
+
+		long size = 0;
+
+		for (AtomicInteger counter : map.values()) {
+			size += counter.get();
+		}
+
+		return (int)Math.min(size, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public Iterator<E> descendingIterator() {
+		return descendingBag().iterator();
+	}
+
+	//navigable bag behaviour
+	@Override
+	public NavigableBag<E> descendingBag() {
+		return new ConcurrentSkipListBag<>(navigable().descendingMap(), occurrences);
+	}
+
+	@Override
+	public NavigableBag<E> subBag(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+		return new ConcurrentSkipListBag<>(navigable().subMap(fromElement, fromInclusive, toElement, toInclusive), occurrences);
+	}
+
+	@Override
+	public NavigableBag<E> headBag(E toElement, boolean inclusive) {
+		return new ConcurrentSkipListBag<>(navigable().headMap(toElement, inclusive), occurrences);
+	}
+
+	@Override
+	public NavigableBag<E> tailBag(E fromElement, boolean inclusive) {
+		return new ConcurrentSkipListBag<>(navigable().tailMap(fromElement, inclusive), occurrences);
+	}
+
+	@Override
+	public SortedBag<E> subBag(E fromElement, E toElement) {
+		return subBag(fromElement, true, toElement, false);
+	}
+
+	@Override
+	public SortedBag<E> headBag(E toElement) {
+		return headBag(toElement, false);
+	}
+
+	@Override
+	public SortedBag<E> tailBag(E fromElement) {
+		return tailBag(fromElement, true);
+	}
+
+	@Override
+	public Comparator<? super E> comparator() {
+		return navigable().comparator();
+	}
+
+	@Override
+	public E first() {
+		Map.Entry<E, AtomicInteger> entry = live(navigable().firstEntry(), true);
+
+		if (entry == null) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		return entry.getKey();
+	}
+
+	@Override
+	public E last() {
+		Map.Entry<E, AtomicInteger> entry = live(navigable().lastEntry(), false);
+
+		if (entry == null) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		return entry.getKey();
+	}
+
+	@Override
+	public E lower(E element) {
+		return key(live(navigable().lowerEntry(element), false));
+	}
+
+	@Override
+	public E floor(E element) {
+		return key(live(navigable().floorEntry(element), false));
+	}
+
+	@Override
+	public E ceiling(E element) {
+		return key(live(navigable().ceilingEntry(element), true));
+	}
+
+	@Override
+	public E higher(E element) {
+		return key(live(navigable().higherEntry(element), true));
+	}
+
+	/**
+	 * Atomically removes one occurrence of the lowest element of this
+	 * bag and returns it, or returns <tt>null</tt> if this bag is empty.
+	 *
+	 * @return the removed occurrence, or <tt>null</tt> if this bag is empty
+	 */
+	@Override
+	public E pollFirst() {
+		for (Map.Entry<E, AtomicInteger> entry; (entry = live(navigable().firstEntry(), true)) != null;) {
+			if (remove(entry.getKey())) {
+				return entry.getKey();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Atomically removes one occurrence of the highest element of this
+	 * bag and returns it, or returns <tt>null</tt> if this bag is empty.
+	 *
+	 * @return the removed occurrence, or <tt>null</tt> if this bag is empty
+	 */
+	@Override
+	public E pollLast() {
+		for (Map.Entry<E, AtomicInteger> entry; (entry = live(navigable().lastEntry(), false)) != null;) {
+			if (remove(entry.getKey())) {
+				return entry.getKey();
+			}
+		}
+
+		return null;
+	}
+
+	//cloneable behaviour
+	/**
+	 * Returns a shallow copy of this bag: the elements themselves are not
+	 * cloned. The copy of a view is a standalone bag holding the elements
+	 * within the range of the view.
+	 *
+	 * @return a shallow copy of this bag
+	 */
+	@Override
+	public Object clone() {
+		try {
+			ConcurrentSkipListBag<E> clone = (ConcurrentSkipListBag<E>)super.clone();
+			clone.map = (comparator() == null ? new ConcurrentSkipListMap<>() : new ConcurrentSkipListMap<>(comparator()));
+			clone.occurrences = new LongAdder();
+			clone.view = false;
+			clone.entries = null;
+			clone.elements = null;
+
+			for (Map.Entry<E, AtomicInteger> entry : map.entrySet()) {
+				int count = entry.getValue().get();
+
+				if (count > 0) {
+					clone.map.put(entry.getKey(), new AtomicInteger(count));
+					clone.occurrences.add(count);
+				}
+			}
+
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	//inherited
+
+	//serializable behaviour
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		output.writeObject(comparator());
+
+		for (Map.Entry<E, AtomicInteger> entry : map.entrySet()) {
+			int count = entry.getValue().get();
+
+			if (count > 0) {
+				output.writeObject(entry.getKey());
+				output.writeInt(count);
+			}
+		}
+
+		//null elements are not permitted, so null marks the end
+		output.writeObject(null);
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		Comparator<? super E> comparator = (Comparator<? super E>)input.readObject();
+
+		map = (comparator == null ? new ConcurrentSkipListMap<>() : new ConcurrentSkipListMap<>(comparator));
+		occurrences = new LongAdder();
+
+		for (E element; (element = (E)input.readObject()) != null;) {
+			put(element, input.readInt());
+		}
+	}
+
+	//miscellaneous
+	private ConcurrentNavigableMap<E, AtomicInteger> navigable() {
+		return (ConcurrentNavigableMap<E, AtomicInteger>)map;
+	}
+
+	/**
+	 * Skips the dead counters, which are about to be removed from the
+	 * map, starting from the specified entry in the given direction.
+	 */
+	private Map.Entry<E, AtomicInteger> live(Map.Entry<E, AtomicInteger> entry, boolean ascending) {
+		while (entry != null && entry.getValue().get() == 0) {
+			entry = (ascending ? navigable().higherEntry(entry.getKey()) : navigable().lowerEntry(entry.getKey()));
+		}
+
+		return entry;
+	}
+
+	private static <E> E key(Map.Entry<E, ?> entry) {
+		return (entry == null ? null : entry.getKey());
+	}
+}
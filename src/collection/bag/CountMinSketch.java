@@ -0,0 +1,332 @@
+package collection.bag;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Count-Min sketch, an approximate counterpart of the counting side of the
+ * <tt>Bag</tt> interface for streams with more distinct elements than fit in
+ * memory. The occurrences are added to a fixed table of <tt>depth</tt> rows
+ * of <tt>width</tt> counters, one counter per row for each element, chosen by
+ * a different hash of the element in each row, so the memory used does not
+ * depend on the number of distinct elements added. The elements themselves
+ * are not kept, so they can not be iterated nor removed.
+ *
+ * <p>The count of an element is the lowest of its counters, which never
+ * underestimates its real count, and overestimates it by at most
+ * <tt>epsilon * size()</tt> with probability at least <tt>1 - delta</tt>,
+ * where the width is <tt>ceil(e / epsilon)</tt> and the depth is
+ * <tt>ceil(ln(1 / delta))</tt>. Occurrences are added by conservative update,
+ * which only raises the counters of an element up to its new estimate, so
+ * the estimates are never worse than those of the plain sketch.</p>
+ *
+ * <p>Sketches with the same dimensions can be combined by
+ * {@link #union(CountMinSketch)}, so a stream can be counted by a sketch per
+ * thread, which are then merged. This implementation permits the
+ * <tt>null</tt> element, and is not synchronized.</p>
+ *
+ * @param <E> the type of elements counted by this sketch
+ *
+ * @author Thiago Reis
+ * @see Bag
+ * @see HashBag
+ * @since 1.0
+ */
+public class CountMinSketch<E> implements Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+
+	//immutable state
+	private final int width;
+	private final int depth;
+
+	//mutable state
+	/**
+	 * The counters, row by row.
+	 */
+	private long[] table;
+
+	/**
+	 * The number of element occurrences added to this sketch.
+	 */
+	private long size = 0;
+
+	//constructors
+	/**
+	 * Constructs an empty sketch whose estimates exceed the real counts by
+	 * at most <tt>epsilon</tt> times the number of occurrences added, with
+	 * probability at least <tt>1 - delta</tt>.
+	 *
+	 * @param epsilon the error of the estimates, relative to the number of
+	 *        occurrences added
+	 * @param delta the probability of an estimate exceeding that error
+	 * @throws IllegalArgumentException if epsilon or delta is not between
+	 *         <tt>0</tt> and <tt>1</tt> (exclusive), or if the resulting table
+	 *         is too large
+	 */
+	public CountMinSketch(double epsilon, double delta) {
+		this(width(epsilon), depth(delta));
+	}
+
+	/**
+	 * Constructs an empty sketch with the specified dimensions.
+	 *
+	 * @param width the number of counters of each row
+	 * @param depth the number of rows, that is, of counters per element
+	 * @throws IllegalArgumentException if the width or the depth is not
+	 *         positive, or if the resulting table is too large
+	 */
+	public CountMinSketch(int width, int depth) {
+		if (width < 1) {
+			throw new IllegalArgumentException("Invalid width: " + width + ".");
+		}
+
+		if (depth < 1) {
+			throw new IllegalArgumentException("Invalid depth: " + depth + ".");
+		}
+
+		if ((long)width * depth > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Invalid table size: " + width + "x" + depth + ".");
+		}
+
+		this.width = width;
+		this.depth = depth;
+		this.table = new long[width * depth];
+	}
+
+	//sketch behaviour
+	/**
+	 * Returns the number of element occurrences added to this sketch. If
+	 * it contains more than <tt>Integer.MAX_VALUE</tt> occurrences, returns
+	 * <tt>Integer.MAX_VALUE</tt>.
+	 *
+	 * @return the number of element occurrences added to this sketch
+	 * @see #occurrences()
+	 */
+	public int size() {
+		return (int)Math.min(size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the number of element occurrences added to this sketch.
+	 *
+	 * @return the number of element occurrences added to this sketch
+	 */
+	public long occurrences() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns an estimate of the number of occurrences of the specified
+	 * element added to this sketch, which is never lower than the real
+	 * count. If it exceeds <tt>Integer.MAX_VALUE</tt>, returns
+	 * <tt>Integer.MAX_VALUE</tt>.
+	 *
+	 * @param object the element whose count is to be estimated
+	 * @return an upper bound of the count of the specified element
+	 * @see #estimate(Object)
+	 */
+	public int count(Object object) {
+		return (int)Math.min(estimate(object), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns an estimate of the number of occurrences of the specified
+	 * element added to this sketch, which is never lower than the real
+	 * count.
+	 *
+	 * @param object the element whose count is to be estimated
+	 * @return an upper bound of the count of the specified element
+	 */
+	public long estimate(Object object) {
+		int hash = hash(object);
+		int step = step(hash);
+		long result = Long.MAX_VALUE;
+
+		for (int row = 0, index = hash; row < depth; row++, index += step) {
+			result = Math.min(result, table[row * width + Math.floorMod(index, width)]);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds a single occurrence of the specified element to this sketch.
+	 *
+	 * @param element the element whose occurrence is to be added
+	 * @return <tt>true</tt>, as this sketch always changes
+	 */
+	public boolean add(E element) {
+		put(element, 1);
+		return true;
+	}
+
+	/**
+	 * Adds the specified number of occurrences of the specified element to
+	 * this sketch, and returns the estimate of its count before they were
+	 * added. Occurrences can not be removed from a sketch.
+	 *
+	 * @param element the element whose occurrences are to be added
+	 * @param amount the number of occurrences to be added
+	 * @return the previous estimate of the count of the specified element,
+	 *         capped at <tt>Integer.MAX_VALUE</tt>
+	 * @throws IllegalArgumentException if the specified amount is negative
+	 */
+	public int put(E element, int amount) {
+		if (amount < 0) {
+			throw new IllegalArgumentException("Invalid negative amount: " + amount + ".");
+		}
+
+		int hash = hash(element);
+		int step = step(hash);
+		long result = Long.MAX_VALUE;
+
+		for (int row = 0, index = hash; row < depth; row++, index += step) {
+			result = Math.min(result, table[row * width + Math.floorMod(index, width)]);
+		}
+
+		if (amount > 0) {
+			//conservative update, the counters already over the new estimate account for other elements
+			long estimate = result + amount;
+
+			for (int row = 0, index = hash; row < depth; row++, index += step) {
+				int slot = row * width + Math.floorMod(index, width);
+				table[slot] = Math.max(table[slot], estimate);
+			}
+
+			size += amount;
+		}
+
+		return (int)Math.min(result, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Adds the occurrences of the specified sketch to this sketch, so that
+	 * the estimates of this sketch bound the counts of the elements added to
+	 * either of them. The specified sketch is left unmodified.
+	 *
+	 * @param sketch the sketch whose occurrences are to be added
+	 * @return this sketch
+	 * @throws NullPointerException if the specified sketch is null
+	 * @throws IllegalArgumentException if the dimensions of the specified
+	 *         sketch differ from the dimensions of this sketch
+	 */
+	public CountMinSketch<E> union(CountMinSketch<? extends E> sketch) {
+		Objects.requireNonNull(sketch, "Invalid null sketch.");
+
+		if (sketch.width != width || sketch.depth != depth) {
+			throw new IllegalArgumentException("Invalid sketch dimensions: " + sketch.width + "x" + sketch.depth + ".");
+		}
+
+		for (int slot = 0; slot < table.length; slot++) {
+			table[slot] += sketch.table[slot];
+		}
+
+		size += sketch.size;
+		return this;
+	}
+
+	/**
+	 * Removes all of the occurrences from this sketch.
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of counters of each row of this sketch.
+	 *
+	 * @return the width of this sketch
+	 */
+	public int width() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of rows of this sketch, that is, of counters per
+	 * element.
+	 *
+	 * @return the depth of this sketch
+	 */
+	public int depth() {
+		return depth;
+	}
+
+	//cloneable behaviour
+	@Override
+	public Object clone() {
+		try {
+			CountMinSketch<E> clone = (CountMinSketch<E>)super.clone();
+			clone.table = table.clone();
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(table) ^ width;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		return object == this || (
+			object instanceof CountMinSketch
+			&& width == ((CountMinSketch<?>)object).width
+			&& depth == ((CountMinSketch<?>)object).depth
+			&& size == ((CountMinSketch<?>)object).size
+			&& Arrays.equals(table, ((CountMinSketch<?>)object).table)
+		);
+	}
+
+	@Override
+	public String toString() {
+		return "CountMinSketch[width=" + width + ", depth=" + depth + ", size=" + size + "]";
+	}
+
+	//miscellaneous
+	private static int width(double epsilon) {
+		if (!(epsilon > 0 && epsilon < 1)) {
+			throw new IllegalArgumentException("Invalid epsilon: " + epsilon + ".");
+		}
+
+		return (int)Math.min(Math.ceil(Math.E / epsilon), Integer.MAX_VALUE);
+	}
+
+	private static int depth(double delta) {
+		if (!(delta > 0 && delta < 1)) {
+			throw new IllegalArgumentException("Invalid delta: " + delta + ".");
+		}
+
+		return (int)Math.ceil(Math.log(1 / delta));
+	}
+
+	/**
+	 * Spreads the hash code of the element over all of its bits, as the
+	 * counters of each row are chosen by the low bits.
+	 */
+	private static int hash(Object object) {
+		long hash = Objects.hashCode(object) * 0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 32;
+		hash *= 0xBF58476D1CE4E5B9L;
+		return (int)(hash ^ (hash >>> 29));
+	}
+
+	/**
+	 * Returns the odd step between the counters of consecutive rows, derived
+	 * from a rehash of the element hash, so that two elements colliding in a
+	 * row are unlikely to collide in the others.
+	 */
+	private static int step(int hash) {
+		int step = hash * 0x85EBCA6B;
+		return (step ^ (step >>> 16)) | 1;
+	}
+}
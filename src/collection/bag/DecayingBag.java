@@ -0,0 +1,381 @@
+package collection.bag;
+
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Counter of exponentially decayed weights, for detecting trending elements:
+ * the weight of each occurrence added halves every half-life, read from a
+ * {@link Clock}, so the weight of an element is the sum of its occurrences,
+ * each one decayed by the time elapsed since it was added.
+ *
+ * <p>Instead of decaying every weight as time goes by, the weights are
+ * kept scaled up by the growth of a global decay factor since a landmark
+ * time, that is, an occurrence added at time <tt>t</tt> is kept as
+ * <tt>2<sup>(t - landmark) / halfLife</sup></tt>, and decayed when read by
+ * the same factor at the time of the read. So adding an occurrence and
+ * reading a weight run in constant time, and the ranking of the elements by
+ * weight does not change between updates. The landmark is moved forward
+ * every <tt>64</tt> half-lives, before the scaled weights grow out of
+ * range, which rescales all of the weights in a single pass and drops those
+ * decayed to zero.</p>
+ *
+ * <p>The weights are real numbers, so this class does not implement the
+ * <tt>Bag</tt> interface, but follows its method names where they apply.
+ * This implementation permits the <tt>null</tt> element, and is not
+ * synchronized.</p>
+ *
+ * @param <E> the type of elements counted by this bag
+ *
+ * @author Thiago Reis
+ * @see SlidingWindowBag
+ * @see Bags#mostCommon(Bag, int)
+ * @since 1.0
+ */
+public class DecayingBag<E> implements Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+
+	/**
+	 * The number of half-lives after which the landmark is moved, which
+	 * bounds the scale of the weights by <tt>2<sup>64</sup></tt>.
+	 */
+	private static final int RENORMALIZATION = 64;
+
+	//immutable state
+	private final Clock clock;
+
+	/**
+	 * The half-life, in milliseconds.
+	 */
+	private final double halfLife;
+
+	//mutable state
+	private HashMap<E, Weight<E>> weights;
+
+	/**
+	 * The time, in milliseconds, at which the scaled weights are not
+	 * scaled, and the sum of the scaled weights.
+	 */
+	private long landmark;
+	private double total = 0;
+
+	//constructors
+	/**
+	 * Constructs an empty bag whose weights halve every specified half-life,
+	 * read from the system clock.
+	 *
+	 * @param halfLife the time it takes for a weight to halve
+	 * @throws NullPointerException if the half-life is null
+	 * @throws IllegalArgumentException if the half-life is shorter than a
+	 *         millisecond
+	 */
+	public DecayingBag(Duration halfLife) {
+		this(halfLife, Clock.systemUTC());
+	}
+
+	/**
+	 * Constructs an empty bag whose weights halve every specified half-life,
+	 * read from the specified clock.
+	 *
+	 * @param halfLife the time it takes for a weight to halve
+	 * @param clock the clock telling the time of the occurrences and reads
+	 * @throws NullPointerException if the half-life or the clock is null
+	 * @throws IllegalArgumentException if the half-life is shorter than a
+	 *         millisecond
+	 */
+	public DecayingBag(Duration halfLife, Clock clock) {
+		Objects.requireNonNull(halfLife, "Invalid null half-life.");
+		Objects.requireNonNull(clock, "Invalid null clock.");
+
+		if (halfLife.toMillis() < 1) {
+			throw new IllegalArgumentException("Invalid half-life: " + halfLife + ".");
+		}
+
+		this.clock = clock;
+		this.halfLife = halfLife.toMillis();
+		this.weights = new HashMap<>();
+		this.landmark = clock.millis();
+	}
+
+	//decaying bag behaviour
+	/**
+	 * Returns the number of distinct elements held by this bag, whose
+	 * weights have not decayed to zero at the last renormalization.
+	 *
+	 * @return the number of distinct elements held by this bag
+	 */
+	public int size() {
+		return weights.size();
+	}
+
+	public boolean isEmpty() {
+		return weights.isEmpty();
+	}
+
+	public boolean contains(Object object) {
+		return weights.containsKey(object);
+	}
+
+	/**
+	 * Adds an occurrence of the specified element, with weight <tt>1</tt>
+	 * at the current time.
+	 *
+	 * @param element the element whose occurrence is to be added
+	 * @return <tt>true</tt>, as this bag always changes
+	 */
+	public boolean add(E element) {
+		put(element, 1);
+		return true;
+	}
+
+	/**
+	 * Adds the specified weight to the specified element, at the current
+	 * time, in constant time.
+	 *
+	 * @param element the element whose weight is to be increased
+	 * @param amount the weight to be added, at the current time
+	 * @return the decayed weight of the element before the call
+	 * @throws IllegalArgumentException if the specified amount is negative
+	 *         or not finite
+	 */
+	public double put(E element, double amount) {
+		if (!(amount >= 0 && amount < Double.POSITIVE_INFINITY)) {
+			throw new IllegalArgumentException("Invalid amount: " + amount + ".");
+		}
+
+		double scale = scale();
+		Weight<E> weight = weights.get(element);
+
+		if (weight == null) {
+			if (amount == 0) {
+				return 0;
+			}
+
+			weight = new Weight<>(element);
+			weights.put(element, weight);
+		}
+
+		double result = weight.value / scale;
+		weight.value += amount * scale;
+		total += amount * scale;
+		return result;
+	}
+
+	/**
+	 * Returns the weight of the specified element, decayed to the current
+	 * time, in constant time.
+	 *
+	 * @param object the element whose weight is to be returned
+	 * @return the decayed weight of the element, or <tt>zero</tt> if it is
+	 *         not held by this bag
+	 */
+	public double weight(Object object) {
+		double scale = scale();
+		Weight<E> weight = weights.get(object);
+		return (weight == null ? 0 : weight.value / scale);
+	}
+
+	/**
+	 * Returns the sum of the weights of all the elements, decayed to the
+	 * current time.
+	 *
+	 * @return the sum of the decayed weights
+	 */
+	public double total() {
+		double scale = scale();
+		return total / scale;
+	}
+
+	/**
+	 * Removes the specified element from this bag.
+	 *
+	 * @param object the element to be removed
+	 * @return the decayed weight of the element, or <tt>zero</tt> if it was
+	 *         not held by this bag
+	 */
+	public double delete(Object object) {
+		double scale = scale();
+		Weight<E> weight = weights.remove(object);
+
+		if (weight == null) {
+			return 0;
+		}
+
+		total -= weight.value;
+		return weight.value / scale;
+	}
+
+	/**
+	 * Removes all of the elements from this bag.
+	 */
+	public void clear() {
+		weights.clear();
+		total = 0;
+	}
+
+	/**
+	 * Performs the given action for each element of this bag and its weight,
+	 * decayed to the current time, in no particular order.
+	 *
+	 * @param action the action to be performed for each element and weight
+	 * @throws NullPointerException if the specified action is null
+	 */
+	public void forEach(ObjDoubleConsumer<? super E> action) {
+		Objects.requireNonNull(action, "Invalid null action.");
+		double scale = scale();
+
+		for (Weight<E> weight : weights.values()) {
+			action.accept(weight.element, weight.value / scale);
+		}
+	}
+
+	/**
+	 * Returns the <tt>k</tt> elements with the highest decayed weights and
+	 * their weights, in descending order of weight. The scaled weights rank
+	 * the elements as their decayed weights do, so they are selected with a
+	 * bounded heap of the scaled weights, in <tt>O(n log k)</tt> time, where
+	 * <tt>n</tt> is the number of distinct elements, and decayed once.
+	 *
+	 * @param k the number of elements to be returned
+	 * @return a new list with the <tt>k</tt> heaviest elements and their
+	 *         decayed weights
+	 * @throws IllegalArgumentException if <tt>k</tt> is negative
+	 */
+	public List<Map.Entry<E, Double>> mostCommon(int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException("Invalid negative k: " + k + ".");
+		}
+
+		int capacity = Math.min(k, weights.size());
+		double scale = scale();
+		PriorityQueue<Weight<E>> heap = new PriorityQueue<>(Math.max(capacity, 1), Comparator.comparingDouble(weight -> weight.value));
+
+		for (Weight<E> weight : weights.values()) {
+			if (heap.size() < capacity) {
+				heap.add(weight);
+			} else if (capacity > 0 && heap.peek().value < weight.value) {
+				heap.poll();
+				heap.add(weight);
+			}
+		}
+
+		List<Map.Entry<E, Double>> result = new ArrayList<>(heap.size());
+
+		while (!heap.isEmpty()) {
+			Weight<E> weight = heap.poll();
+			result.add(new AbstractMap.SimpleImmutableEntry<>(weight.element, weight.value / scale));
+		}
+
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * Returns the time it takes for a weight to halve.
+	 *
+	 * @return the half-life of this bag
+	 */
+	public Duration halfLife() {
+		return Duration.ofMillis((long)halfLife);
+	}
+
+	//cloneable behaviour
+	@Override
+	public Object clone() {
+		try {
+			DecayingBag<E> clone = (DecayingBag<E>)super.clone();
+			clone.weights = new HashMap<>(weights.size());
+
+			for (Weight<E> weight : weights.values()) {
+				Weight<E> copy = new Weight<>(weight.element);
+				copy.value = weight.value;
+				clone.weights.put(weight.element, copy);
+			}
+
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		forEach((element, weight) -> builder.append(builder.length() > 1 ? ", " : "").append(element).append('=').append(weight));
+		return builder.append(']').toString();
+	}
+
+	//miscellaneous
+	/**
+	 * Returns the growth of the decay factor from the landmark to the current
+	 * time, by which the weights are scaled, moving the landmark to the
+	 * current time first if it is too far behind. The weights are read and
+	 * updated after this call, as it may rescale them.
+	 */
+	private double scale() {
+		long now = clock.millis();
+		//a clock going backwards does not decay, nor grow, the weights
+		double exponent = Math.max((now - landmark) / halfLife, 0);
+
+		if (exponent > RENORMALIZATION) {
+			renormalize(now, Math.pow(2, -exponent));
+			return 1;
+		}
+
+		return Math.pow(2, exponent);
+	}
+
+	/**
+	 * Moves the landmark to the specified time, rescaling the weights by the
+	 * specified factor and removing those which decayed to zero.
+	 */
+	private void renormalize(long now, double factor) {
+		total = 0;
+
+		for (Iterator<Weight<E>> iterator = weights.values().iterator(); iterator.hasNext();) {
+			Weight<E> weight = iterator.next();
+			weight.value *= factor;
+
+			if (weight.value < Double.MIN_NORMAL) {
+				iterator.remove();
+			} else {
+				total += weight.value;
+			}
+		}
+
+		landmark = now;
+	}
+
+	/**
+	 * Scaled weight of an element.
+	 */
+	private static final class Weight<E> implements Serializable {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		private final E element;
+
+		//mutable state
+		private double value = 0;
+
+		//constructors
+		Weight(E element) {
+			this.element = element;
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package collection.bag;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * HyperLogLog sketch, which estimates the number of distinct elements added
+ * to it in a fixed amount of memory, without keeping the elements. It is the
+ * approximate counterpart of <tt>asEntrySet().size()</tt> for streams which
+ * are never stored in a bag. The hash of each element selects one of
+ * <tt>2<sup>precision</sup></tt> registers, which keeps the longest run of
+ * leading zeros seen in the rest of the hashes selecting it, and the
+ * estimate is taken from the harmonic mean of the registers.
+ *
+ * <p>The relative standard error of the estimate is about
+ * <tt>1.04 / sqrt(2<sup>precision</sup>)</tt>, <tt>0.8%</tt> for the default
+ * precision of <tt>14</tt>, which takes <tt>16</tt> KiB, and the estimate
+ * is corrected for the bias of small cardinalities.</p>
+ *
+ * <p>By default, the elements are hashed from their <tt>hashCode</tt>,
+ * spread over 64 bits, so elements with the same hash code are counted once,
+ * even if they are not equal. So the estimate never exceeds about
+ * <tt>2<sup>32</sup></tt>, and it is lowered by the collisions of the hash
+ * codes long before: about <tt>10%</tt> for a billion distinct strings. Keys
+ * whose hash codes collide by construction, such as <tt>Long</tt>s with
+ * equal halves, may collapse to a handful. Elements whose hash codes are
+ * not spread enough are counted by a sketch with a 64-bit hasher, which is
+ * then used instead of <tt>hashCode</tt>.</p>
+ *
+ * <p>Sketches with the same precision are combined by
+ * {@link #union(DistinctSketch)}, which estimates the number of distinct
+ * elements of the union of their streams, so the cardinality of many shards
+ * can be estimated without building their union. This implementation
+ * permits the <tt>null</tt> element, and is not synchronized.</p>
+ *
+ * @param <E> the type of elements added to this sketch
+ *
+ * @author Thiago Reis
+ * @see Bag#distinctSketch(int)
+ * @see Bags#distinctSketch()
+ * @see CountMinSketch
+ * @since 1.0
+ */
+public class DistinctSketch<E> implements Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+	static final int DEFAULT_PRECISION = 14;
+	private static final int MINIMUM_PRECISION = 4;
+	private static final int MAXIMUM_PRECISION = 16;
+
+	//immutable state
+	private final int precision;
+
+	/**
+	 * The 64-bit hash function of the elements, or null to spread their
+	 * hash codes.
+	 */
+	private final ToLongFunction<? super E> hasher;
+
+	//mutable state
+	private byte[] registers;
+
+	//constructors
+	public DistinctSketch() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Constructs an empty sketch with <tt>2<sup>precision</sup></tt>
+	 * registers.
+	 *
+	 * @param precision the number of bits of the hash selecting a register,
+	 *        from <tt>4</tt> to <tt>16</tt>
+	 * @throws IllegalArgumentException if the precision is out of range
+	 */
+	public DistinctSketch(int precision) {
+		this.precision = check(precision);
+		this.hasher = null;
+		this.registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Constructs an empty sketch with <tt>2<sup>precision</sup></tt>
+	 * registers, which hashes the elements with the specified function
+	 * instead of their <tt>hashCode</tt>, so that it can count more than
+	 * <tt>2<sup>32</sup></tt> distinct elements. The hashes are mixed
+	 * again, so the function only has to be injective over the elements,
+	 * as the identity is over <tt>Long</tt>s. The sketch is only
+	 * serializable if the function is.
+	 *
+	 * @param precision the number of bits of the hash selecting a register,
+	 *        from <tt>4</tt> to <tt>16</tt>
+	 * @param hasher the 64-bit hash function of the elements
+	 * @throws NullPointerException if the hash function is null
+	 * @throws IllegalArgumentException if the precision is out of range
+	 */
+	public DistinctSketch(int precision, ToLongFunction<? super E> hasher) {
+		this.precision = check(precision);
+		this.hasher = Objects.requireNonNull(hasher, "Invalid null hasher.");
+		this.registers = new byte[1 << precision];
+	}
+
+	//sketch behaviour
+	/**
+	 * Adds the specified element to this sketch.
+	 *
+	 * @param element the element to be added
+	 * @return <tt>true</tt> if this sketch changed as a result of the call
+	 */
+	public boolean add(E element) {
+		long hash = (hasher == null ? hash(element) : mix(hasher.applyAsLong(element)));
+		int index = (int)(hash >>> (64 - precision));
+		//the sentinel bit bounds the run of zeros by the bits left after the index
+		byte rank = (byte)(Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+
+		if (registers[index] < rank) {
+			registers[index] = rank;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the estimated number of distinct elements added to this
+	 * sketch.
+	 *
+	 * @return the estimated number of distinct elements
+	 */
+	public long estimate() {
+		double sum = 0;
+		int zeros = 0;
+
+		for (byte register : registers) {
+			sum += Math.scalb(1.0, -register);
+
+			if (register == 0) {
+				zeros++;
+			}
+		}
+
+		double m = registers.length;
+		double estimate = alpha() * m * m / sum;
+
+		if (estimate <= 2.5 * m && zeros > 0) {
+			//linear counting, the raw estimate is biased for small cardinalities
+			estimate = m * Math.log(m / zeros);
+		}
+
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Adds the elements of the specified sketch to this sketch, so that it
+	 * estimates the number of distinct elements added to either of them. The
+	 * specified sketch is left unmodified.
+	 *
+	 * @param sketch the sketch whose elements are to be added
+	 * @return this sketch
+	 * @throws NullPointerException if the specified sketch is null
+	 * @throws IllegalArgumentException if the precision of the specified
+	 *         sketch differs from the precision of this sketch, or if they do
+	 *         not share the same hash function
+	 */
+	public DistinctSketch<E> union(DistinctSketch<? extends E> sketch) {
+		Objects.requireNonNull(sketch, "Invalid null sketch.");
+
+		if (sketch.precision != precision) {
+			throw new IllegalArgumentException("Invalid sketch precision: " + sketch.precision + ".");
+		}
+
+		if (!Objects.equals(sketch.hasher, hasher)) {
+			throw new IllegalArgumentException("Invalid sketch hasher: " + sketch.hasher + ".");
+		}
+
+		for (int index = 0; index < registers.length; index++) {
+			if (registers[index] < sketch.registers[index]) {
+				registers[index] = sketch.registers[index];
+			}
+		}
+
+		return this;
+	}
+
+	public boolean isEmpty() {
+		for (byte register : registers) {
+			if (register != 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes all of the elements from this sketch.
+	 */
+	public void clear() {
+		Arrays.fill(registers, (byte)0);
+	}
+
+	/**
+	 * Returns the number of bits of the hash selecting a register.
+	 *
+	 * @return the precision of this sketch
+	 */
+	public int precision() {
+		return precision;
+	}
+
+	//cloneable behaviour
+	@Override
+	public Object clone() {
+		try {
+			DistinctSketch<E> clone = (DistinctSketch<E>)super.clone();
+			clone.registers = registers.clone();
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(registers);
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		return object == this || (
+			object instanceof DistinctSketch
+			&& precision == ((DistinctSketch<?>)object).precision
+			&& Objects.equals(hasher, ((DistinctSketch<?>)object).hasher)
+			&& Arrays.equals(registers, ((DistinctSketch<?>)object).registers)
+		);
+	}
+
+	@Override
+	public String toString() {
+		return "DistinctSketch[precision=" + precision + ", estimate=" + estimate() + "]";
+	}
+
+	//miscellaneous
+	/**
+	 * Checks the specified precision, returning it.
+	 */
+	static int check(int precision) {
+		if (precision < MINIMUM_PRECISION || precision > MAXIMUM_PRECISION) {
+			throw new IllegalArgumentException("Invalid precision: " + precision + ".");
+		}
+
+		return precision;
+	}
+
+	private double alpha() {
+		switch (registers.length) {
+			case 16:
+				return 0.673;
+			case 32:
+				return 0.697;
+			case 64:
+				return 0.709;
+			default:
+				return 0.7213 / (1 + 1.079 / registers.length);
+		}
+	}
+
+	/**
+	 * Spreads the hash code of the element over 64 bits.
+	 */
+	private static long hash(Object object) {
+		return mix(Objects.hashCode(object));
+	}
+
+	/**
+	 * Mixes the specified hash with the finalizer of SplitMix64, which is a
+	 * bijection, so distinct hashes stay distinct.
+	 */
+	private static long mix(long hash) {
+		hash += 0x9E3779B97F4A7C15L;
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
+	}
+}
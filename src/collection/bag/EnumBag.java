@@ -1,14 +1,24 @@
 //TODO implement constructor for Map<? extends E, ? extends Number> map
-//TODO not setting size on constructors
-//TODO implementar serializable e writeObject()/readObject()
 
 package collection.bag;
 
+import static java.util.Objects.requireNonNull;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntBinaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * A specialized {@link Bag} implementation for use with enum type elements.
@@ -16,39 +26,39 @@ import java.util.Objects;
  * specified, explicitly or implicitly, when the bag is created. Enum bags
  * are represented internally as arrays. This representation is extremely
  * compact and efficient.
- * 
+ *
  * <p>The iterator returned by the <tt>iterator</tt> method traverses the
  * elements in their <i>natural order</i> (the order in which the enum
  * constants are declared). The returned iterator is <i>weakly
  * consistent</i>: it will never throw {@link java.util.ConcurrentModificationException}
  * and it may or may not show the effects of any modifications to the bag that
  * occur while the iteration is in progress.</p>
- * 
+ *
  * <p>Null elements are not permitted. Attempts to insert a null element
  * will throw {@link NullPointerException}. Attempts to test for the
  * presence of a null element or to remove one will, however, function
  * properly.</p>
- * 
+ *
  * <p>Like most collection implementations, <tt>EnumBag</tt> is not
  * synchronized. If multiple threads access an enum set concurrently, and at
  * least one of the threads modifies the bag, it should be synchronized
  * externally. This is typically accomplished by synchronizing on some
  * object that naturally encapsulates the enum bag. If no such object exists,
- * the set should be "wrapped" using the <!--{@link Bags#synchronizedBag}-->
+ * the set should be "wrapped" using the {@link Bags#synchronizedBag(Bag)}
  * method. This is best done at creation time, to prevent accidental
  * unsynchronized access:</p>
- * 
+ *
  * <pre>
- * Bag&lt;MyEnum&gt; bag = Collections.synchronizedBag(new EnumBag&lt;MyEnum&gt;(...));
+ * Bag&lt;MyEnum&gt; bag = Bags.synchronizedBag(new EnumBag&lt;MyEnum&gt;(...));
  * </pre>
- * 
+ *
  * <p>Implementation note: All basic operations execute in constant time.
  * They are likely (though not guaranteed) to be much faster than their
  * {@link HashBag} counterparts. Even bulk operations execute in
  * constant time if their argument is also an enum bag.</p>
- * 
+ *
  * @param <E> the type of elements maintained by this bag
- * 
+ *
  * @author Thiago Reis
  * @see Bag
  * @see AbstractBag
@@ -56,29 +66,69 @@ import java.util.Objects;
  * @see java.util.EnumSet
  * @since 1.0
  */
-public class EnumBag<E> extends AbstractMapBag<E> implements Bag<E>, Serializable, Cloneable {
+public class EnumBag<E extends Enum<E>> extends AbstractBag<E> implements Bag<E>, Serializable, Cloneable {
 	//static state
 	private static final long serialVersionUID = -1L;
 
+	//immutable state
+	/**
+	 * The class of all the elements of this bag.
+	 */
+	private final Class<E> type;
+
+	/**
+	 * All of the values comprising <tt>type</tt>, cached for performance.
+	 */
+	private transient E[] universe;
+
+	//mutable state
+	/**
+	 * The number of occurrences of each element, indexed by ordinal.
+	 */
+	private transient int[] counts;
+
+	/**
+	 * The number of distinct elements contained in this bag.
+	 */
+	private transient int distinct = 0;
+
+	/**
+	 * The number of element occurrences contained in this bag.
+	 */
+	private transient long size = 0;
+
+	/**
+	 * The number of changes made to the counts of this bag, which tells
+	 * whether the index kept for sampling is still valid.
+	 */
+	private transient int modification = 0;
+
 	/**
 	 * Creates an empty enum bag with the specified element type.
-	 * 
+	 *
 	 * @param type the class object of the element type for this enum bag
 	 * @throws NullPointerException if <tt>type</tt> is null
 	 */
 	public EnumBag(Class<E> type) {
-		map = new EnumMap(Objects.requireNonNull(type, "Invalid null type."));
+		this.type = requireNonNull(type, "Invalid null type.");
+		this.universe = type.getEnumConstants();
+		this.counts = new int[universe.length];
 	}
 
 	/**
 	 * Creates an enum bag with the same element type as the specified enum
 	 * bag, initially containing the same elements (if any).
-	 * 
+	 *
 	 * @param bag the enum bag from which to initialize this enum bag
 	 * @throws NullPointerException if <tt>bag</tt> is null
 	 */
 	public EnumBag(EnumBag<E> bag) {
-		map = new EnumMap(Objects.requireNonNull(bag, "Invalid null bag.").map);
+		requireNonNull(bag, "Invalid null bag.");
+		this.type = bag.type;
+		this.universe = bag.universe;
+		this.counts = bag.counts.clone();
+		this.distinct = bag.distinct;
+		this.size = bag.size;
 	}
 
 	/**
@@ -87,35 +137,511 @@ public class EnumBag<E> extends AbstractMapBag<E> implements Bag<E>, Serializabl
 	 * identically to {@link #EnumBag(EnumBag)}. Otherwise, the specified bag
 	 * must contain at least one element (in order to determine the new
 	 * enum bag's element type).
-	 * 
+	 *
 	 * @param bag the bag from which to initialize this enum bag
 	 * @throws IllegalArgumentException if <tt>bag</tt> is not an
 	 * <tt>EnumBag</tt> instance and contains no elements
 	 * @throws NullPointerException if <tt>bag</tt> is null
 	 */
 	public EnumBag(Bag<E> bag) {
-		Objects.requireNonNull(bag, "Invalid null bag.");
+		requireNonNull(bag, "Invalid null bag.");
 
-		if (bag instanceof AbstractMapBag) {
-			map = new EnumMap(((AbstractMapBag)bag).map);
+		if (bag instanceof EnumBag) {
+			EnumBag<E> surrogate = (EnumBag<E>)bag;
+			this.type = surrogate.type;
+			this.universe = surrogate.universe;
+			this.counts = surrogate.counts.clone();
+			this.distinct = surrogate.distinct;
+			this.size = surrogate.size;
 		} else {
-			map = new EnumMap(bag.toMap(HashMap::new));
+			Iterator<E> iterator = bag.iterator();
+
+			if (!iterator.hasNext()) {
+				throw new IllegalArgumentException("Invalid empty bag.");
+			}
+
+			this.type = iterator.next().getDeclaringClass();
+			this.universe = type.getEnumConstants();
+			this.counts = new int[universe.length];
+
+			for (Entry<E> entry : bag.asEntrySet()) {
+				put(entry.getElement(), entry.getCount());
+			}
+		}
+	}
+
+	//bag behaviour
+	@Override
+	public int size() {
+		if (size > Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
 		}
+
+		return (int)size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return distinct == 0;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return isValid(object) && counts[((Enum<?>)object).ordinal()] > 0;
+	}
+
+	@Override
+	public int count(Object object) {
+		return (isValid(object) ? counts[((Enum<?>)object).ordinal()] : 0);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			//mutable state
+			private int cursor = 0;
+			private int current = -1;
+			private int countdown = 0;
+			private boolean removable = false;
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				if (countdown > 0) {
+					return true;
+				}
+
+				while (cursor < counts.length && counts[cursor] == 0) {
+					cursor++;
+				}
+
+				return cursor < counts.length;
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException("Iteration has no more elements.");
+				}
+
+				if (countdown == 0) {
+					current = cursor++;
+					countdown = counts[current];
+				}
+
+				countdown--;
+				removable = true;
+				return universe[current];
+			}
+
+			@Override
+			public void remove() {
+				if (!removable) {
+					throw new IllegalStateException("The iterator.next() method has not yet been called, or the iterator.remove() method has already been called after the last call to the iterator.next() method.");
+				}
+
+				//the remaining countdown is left untouched, it counts the occurrences still to be returned
+				EnumBag.this.remove(universe[current]);
+				removable = false;
+			}
+		};
+	}
+
+	/**
+	 * This field is initialized to contain an instance of the
+	 * view the first time this view is requested. The view
+	 * is stateless, so there's no reason to create more than one.
+	 */
+	private transient volatile Set<Entry<E>> entries;
+
+	/**
+	 * The entries of all the elements of the universe, indexed by ordinal.
+	 * Entries are views over the counts array, so they are created once
+	 * and shared by all the traversals of the <tt>asEntrySet</tt> view and
+	 * of the {@link #entryStream()}.
+	 */
+	private transient volatile Entry<E>[] table;
+
+	@Override
+	public Set<Entry<E>> asEntrySet() {
+		if (entries == null) {
+			entries = new AbstractSet<Entry<E>>() {
+				@Override
+				public int size() {
+					return distinct;
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					return object instanceof Entry
+						&& ((Entry<?>)object).getCount() > 0
+						&& count(((Entry<?>)object).getElement()) == ((Entry<?>)object).getCount();
+				}
+
+				@Override
+				public boolean remove(Object object) {
+					if (contains(object)) {
+						delete(((Entry<?>)object).getElement());
+						return true;
+					}
+
+					return false;
+				}
+
+				@Override
+				public void clear() {
+					EnumBag.this.clear();
+				}
+
+				@Override
+				public Iterator<Entry<E>> iterator() {
+					return new Iterator<Entry<E>>() {
+						//mutable state
+						private int cursor = 0;
+						private int current = -1;
+
+						//iterator behaviour
+						@Override
+						public boolean hasNext() {
+							while (cursor < counts.length && counts[cursor] == 0) {
+								cursor++;
+							}
+
+							return cursor < counts.length;
+						}
+
+						@Override
+						public Entry<E> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException("Iteration has no more elements.");
+							}
+
+							current = cursor++;
+
+							return table()[current];
+						}
+
+						@Override
+						public void remove() {
+							if (current < 0) {
+								throw new IllegalStateException("The iterator.next() method has not yet been called, or the iterator.remove() method has already been called after the last call to the iterator.next() method.");
+							}
+
+							delete(universe[current]);
+							current = -1;
+						}
+					};
+				}
+			};
+		}
+
+		return entries;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation reads the counts array directly,
+	 * so no entry object is allocated.</p>
+	 */
+	@Override
+	public void forEachEntry(ObjIntConsumer<? super E> action) {
+		requireNonNull(action, "Invalid null action.");
+
+		for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+			if (counts[ordinal] > 0) {
+				action.accept(universe[ordinal], counts[ordinal]);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation streams the range of ordinals, so it splits
+	 * evenly, and maps each contained element to an entry shared with the
+	 * <tt>asEntrySet</tt> view, so no entry object is allocated per element.
+	 * Like the iterators of this bag, the returned stream is weakly
+	 * consistent.</p>
+	 */
+	@Override
+	public Stream<Entry<E>> entryStream() {
+		Entry<E>[] table = table();
+		return IntStream.range(0, counts.length).filter(ordinal -> counts[ordinal] > 0).mapToObj(ordinal -> table[ordinal]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation streams the counts array directly.</p>
+	 */
+	@Override
+	public IntStream counts() {
+		return Arrays.stream(counts).filter(count -> count > 0);
+	}
+
+	/**
+	 * The index over the entries of this bag built by the last sample, along
+	 * with the modification count it was built at, which is only read
+	 * when drawing with replacement.
+	 */
+	private transient volatile Sampler<E> sampler;
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation keeps the index built over the entries of this
+	 * bag until this bag is modified, so repeated draws from an unmodified bag run in
+	 * logarithmic time in the number of distinct elements.</p>
+	 */
+	@Override
+	public E sample(Random random) {
+		requireNonNull(random, "Invalid null random.");
+		return sampler().next(random);
+	}
+
+	@Override
+	public Stream<E> sample(Random random, long size, boolean replacement) {
+		requireNonNull(random, "Invalid null random.");
+		return sampler().stream(random, size, replacement);
+	}
+
+	@Override
+	public int put(E element, int amount) {
+		int ordinal = check(element).ordinal();
+		int result = counts[ordinal];
+
+		if (amount > Integer.MAX_VALUE - result) {
+			throw new IllegalArgumentException("Invalid count overflow: " + result + " + " + amount + ".");
+		}
+
+		if (amount > 0 || result + amount > 0) {
+			update(ordinal, result + amount);
+		} else if (result > 0) {
+			update(ordinal, 0);
+		}
+
+		return result;
+	}
+
+	@Override
+	public int set(E element, int count) {
+		int ordinal = check(element).ordinal();
+		int result = counts[ordinal];
+		update(ordinal, Math.max(count, 0));
+		return result;
+	}
+
+	@Override
+	public int merge(E element, int count, IntBinaryOperator function) {
+		requireNonNull(function, "Invalid null function.");
+
+		int ordinal = check(element).ordinal();
+		int result = (counts[ordinal] == 0 ? count : function.applyAsInt(counts[ordinal], count));
+		update(ordinal, Math.max(result, 0));
+		return counts[ordinal];
+	}
+
+	@Override
+	public int compute(E element, ObjIntToIntFunction<? super E> function) {
+		requireNonNull(function, "Invalid null function.");
+
+		int ordinal = check(element).ordinal();
+		int result = function.applyAsInt(element, counts[ordinal]);
+		update(ordinal, Math.max(result, 0));
+		return counts[ordinal];
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		if (!contains(object)) {
+			return false;
+		}
+
+		int ordinal = ((Enum<?>)object).ordinal();
+		update(ordinal, counts[ordinal] - 1);
+		return true;
+	}
+
+	@Override
+	public int delete(Object object) {
+		if (!isValid(object)) {
+			return 0;
+		}
+
+		int ordinal = ((Enum<?>)object).ordinal();
+		int result = counts[ordinal];
+		update(ordinal, 0);
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(counts, 0);
+		distinct = 0;
+		size = 0;
+		modification++;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>If the specified collection is also an enum bag, this
+	 * implementation compares both counts arrays element-wise.</p>
+	 */
+	@Override
+	public boolean containsAll(Collection<?> collection) {
+		if (!(collection instanceof EnumBag)) {
+			return super.containsAll(collection);
+		}
+
+		EnumBag<?> surrogate = (EnumBag<?>)collection;
+
+		if (surrogate.type != type) {
+			return surrogate.isEmpty();
+		}
+
+		for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+			if (surrogate.counts[ordinal] > counts[ordinal]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>If the specified collection is also an enum bag, this
+	 * implementation adds both counts arrays element-wise.</p>
+	 */
+	@Override
+	public boolean addAll(Collection<? extends E> collection) {
+		if (!(collection instanceof EnumBag)) {
+			return super.addAll(collection);
+		}
+
+		EnumBag<?> surrogate = (EnumBag<?>)collection;
+
+		if (surrogate.type != type) {
+			if (surrogate.isEmpty()) {
+				return false;
+			}
+
+			throw new ClassCastException(surrogate.type + " != " + type);
+		}
+
+		int[] additions = surrogate.counts;
+		long amount = surrogate.size;
+
+		for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+			if (additions[ordinal] > 0) {
+				if (counts[ordinal] == 0) {
+					distinct++;
+				}
+
+				counts[ordinal] += additions[ordinal];
+			}
+		}
+
+		size += amount;
+		modification++;
+		return amount > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>If the specified collection is also an enum bag, this
+	 * implementation subtracts both counts arrays element-wise.</p>
+	 */
+	@Override
+	public boolean removeAll(Collection<?> collection) {
+		if (!(collection instanceof EnumBag)) {
+			return super.removeAll(collection);
+		}
+
+		EnumBag<?> surrogate = (EnumBag<?>)collection;
+
+		if (surrogate.type != type) {
+			return false;
+		}
+
+		long amount = 0;
+
+		for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+			int removal = Math.min(counts[ordinal], surrogate.counts[ordinal]);
+
+			if (removal > 0) {
+				counts[ordinal] -= removal;
+				amount += removal;
+
+				if (counts[ordinal] == 0) {
+					distinct--;
+				}
+			}
+		}
+
+		size -= amount;
+		modification++;
+		return amount > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>If the specified collection is also an enum bag, this implementation
+	 * takes the element-wise minimum of both counts arrays.</p>
+	 */
+	@Override
+	public boolean retainAll(Collection<?> collection) {
+		if (!(collection instanceof EnumBag)) {
+			return super.retainAll(collection);
+		}
+
+		EnumBag<?> surrogate = (EnumBag<?>)collection;
+
+		if (surrogate.type != type) {
+			boolean result = !isEmpty();
+			clear();
+			return result;
+		}
+
+		long amount = 0;
+
+		for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+			int removal = counts[ordinal] - surrogate.counts[ordinal];
+
+			if (removal > 0) {
+				counts[ordinal] -= removal;
+				amount += removal;
+
+				if (counts[ordinal] == 0) {
+					distinct--;
+				}
+			}
+		}
+
+		size -= amount;
+		modification++;
+		return amount > 0;
 	}
 
 	/**
 	 * Returns a shallow copy of this enum bag.
 	 * (The values themselves are not cloned.)
-	 * 
+	 *
 	 * @return a shallow copy of this enum bag
 	 */
 	@Override
 	public Object clone() {
-		//TODO estudar e testar clone
 		try {
 			EnumBag<E> clone = (EnumBag<E>)super.clone();
-			clone.map = new EnumMap(map);
-			//clone.map = (HashMap<E, Counter>)((HashMap<E, Counter>)map).clone();
+			clone.counts = counts.clone();
+			clone.entries = null;
+			clone.table = null;
+			clone.elements = null;
 			return clone;
 		} catch (CloneNotSupportedException exception) {
 			throw new InternalError(exception);
@@ -123,5 +649,175 @@ public class EnumBag<E> extends AbstractMapBag<E> implements Bag<E>, Serializabl
 	}
 
 	//object behaviour
-	//inherited
+	@Override
+	public int hashCode() {
+		int hashcode = 0;
+
+		for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+			if (counts[ordinal] > 0) {
+				hashcode += universe[ordinal].hashCode() ^ counts[ordinal];
+			}
+		}
+
+		return hashcode;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (object instanceof EnumBag) {
+			EnumBag<?> surrogate = (EnumBag<?>)object;
+			return surrogate.type == type ? Arrays.equals(counts, surrogate.counts) : isEmpty() && surrogate.isEmpty();
+		}
+
+		return super.equals(object);
+	}
+
+	//serializable behaviour
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		output.writeInt(distinct);
+
+		for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+			if (counts[ordinal] > 0) {
+				output.writeObject(universe[ordinal]);
+				output.writeInt(counts[ordinal]);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		universe = type.getEnumConstants();
+		counts = new int[universe.length];
+		int length = input.readInt();
+
+		if (length < 0) {
+			throw new InvalidObjectException("Invalid number of entries: " + length + ".");
+		}
+
+		for (int entry = 0; entry < length; entry++) {
+			put((E)input.readObject(), input.readInt());
+		}
+	}
+
+	//miscellaneous
+	/**
+	 * Returns the index over the entries of this bag, building it again if
+	 * this bag was modified since it was last built.
+	 */
+	private Sampler<E> sampler() {
+		Sampler<E> result = sampler;
+
+		if (result == null || result.modification != modification) {
+			result = new Sampler<>(this, modification);
+			sampler = result;
+		}
+
+		return result;
+	}
+
+	private boolean isValid(Object object) {
+		//same test as EnumMap, constants with a body are instances of an anonymous subclass
+		return object != null && (object.getClass() == type || object.getClass().getSuperclass() == type);
+	}
+
+	private E check(E element) {
+		requireNonNull(element, "Invalid null element.");
+
+		if (!isValid(element)) {
+			throw new ClassCastException(element.getClass() + " != " + type);
+		}
+
+		return element;
+	}
+
+	private void update(int ordinal, int count) {
+		int previous = counts[ordinal];
+
+		if (previous == 0 && count > 0) {
+			distinct++;
+		} else if (previous > 0 && count == 0) {
+			distinct--;
+		}
+
+		counts[ordinal] = count;
+		size += count - previous;
+		modification++;
+		assert size >= 0 : "Invalid bag negative size.";
+	}
+
+	/**
+	 * Returns the entries of all the elements of the universe, indexed
+	 * by ordinal, creating them the first time they are requested.
+	 */
+	private Entry<E>[] table() {
+		Entry<E>[] table = this.table;
+
+		if (table == null) {
+			table = (Entry<E>[])new Entry<?>[universe.length];
+
+			for (int ordinal = 0; ordinal < table.length; ordinal++) {
+				table[ordinal] = new OrdinalEntry(ordinal);
+			}
+
+			this.table = table;
+		}
+
+		return table;
+	}
+
+	/**
+	 * An entry of this bag, which reads and writes the count of its
+	 * element through the counts array, so the same entry can be
+	 * returned every time the element is traversed.
+	 */
+	private final class OrdinalEntry implements Entry<E> {
+		//immutable state
+		private final int ordinal;
+
+		//constructors
+		OrdinalEntry(int ordinal) {
+			this.ordinal = ordinal;
+		}
+
+		//entry behaviour
+		@Override
+		public E getElement() {
+			return universe[ordinal];
+		}
+
+		@Override
+		public int getCount() {
+			return counts[ordinal];
+		}
+
+		@Override
+		public int setCount(int count) {
+			if (count < 1) {
+				throw new IllegalArgumentException("Invalid count value for entry: " + toString() + ".");
+			}
+
+			return set(universe[ordinal], count);
+		}
+
+		//object behaviour
+		@Override
+		public int hashCode() {
+			return universe[ordinal].hashCode() ^ counts[ordinal];
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			return object == this || (
+				object instanceof Entry
+				&& universe[ordinal] == ((Entry<?>)object).getElement()
+				&& counts[ordinal] == ((Entry<?>)object).getCount()
+			);
+		}
+
+		@Override
+		public String toString() {
+			return universe[ordinal] + "=" + counts[ordinal];
+		}
+	}
 }
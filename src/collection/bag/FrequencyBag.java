@@ -0,0 +1,850 @@
+package collection.bag;
+
+import collection.AbstractIterator;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Hash table and frequency list based implementation of the <tt>Bag</tt>
+ * interface, which keeps its elements ordered by count. Each element is held
+ * by a node in a hash map, and the nodes are linked into buckets, one for each
+ * distinct count in the bag, which are kept in a doubly linked list in
+ * ascending order of count. This implementation permits the <tt>null</tt>
+ * element.
+ *
+ * <p>Adding or removing a single occurrence of an element moves its node to a
+ * neighbouring bucket, so it runs in constant time, as do {@link #count},
+ * {@link #mostFrequent()} and {@link #leastFrequent()}. Changing a count by a
+ * larger amount walks the buckets between the old and the new count. The
+ * elements are traversed in order of count by {@link #countIterator(boolean)}
+ * and {@link #forEachEntry(ObjIntConsumer)}, and those with a given count are
+ * returned by {@link #elementsWithCount(int)}, without sorting them. Elements
+ * with the same count are kept in the order they reached that count.</p>
+ *
+ * <p>The iterators returned by this bag's <tt>iterator</tt> method and by its
+ * collection views traverse the hash map, so changing the count of an entry
+ * through them does not change the order of the iteration.</p>
+ *
+ * <p>Note that this implementation is not synchronized. The iterators
+ * returned by this bag's <tt>iterator</tt> and <tt>countIterator</tt> methods
+ * and by its collection views are <i>fail-fast</i>: if the bag is structurally
+ * modified at any time after the iterator is created, in any way except
+ * through the iterator's own <tt>remove</tt> method or the <tt>setCount</tt>
+ * method of an entry returned by it, the iterator throws a
+ * {@link java.util.ConcurrentModificationException}.</p>
+ *
+ * @param <E> the type of elements maintained by this bag
+ *
+ * @author Thiago Reis
+ * @see Bag
+ * @see AbstractBag
+ * @see HashBag
+ * @since 1.0
+ */
+public class FrequencyBag<E> extends AbstractBag<E> implements Bag<E>, Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+
+	//mutable state
+	private transient HashMap<E, Node<E>> nodes;
+
+	/**
+	 * The buckets with the lowest and the highest count, both null if this
+	 * bag is empty.
+	 */
+	private transient Bucket<E> lowest;
+	private transient Bucket<E> highest;
+
+	/**
+	 * The number of element occurrences contained in this bag.
+	 */
+	private transient long size = 0;
+
+	/**
+	 * The number of times this bag has been structurally modified.
+	 * This field is used to make iterators on Collection-views of
+	 * the bag fail-fast. (See ConcurrentModificationException).
+	 */
+	private transient int modification = 0;
+
+	//constructors
+	public FrequencyBag() {
+		nodes = new HashMap<>();
+	}
+
+	public FrequencyBag(int initialCapacity) {
+		nodes = new HashMap<>(initialCapacity);
+	}
+
+	public FrequencyBag(Collection<? extends E> collection) {
+		this(Objects.requireNonNull(collection, "Invalid null collection.") instanceof Bag ? ((Bag<?>)collection).asEntrySet().size() : collection.size());
+		addAll(collection);
+	}
+
+	public FrequencyBag(Map<? extends E, ? extends Number> map) {
+		this(Objects.requireNonNull(map, "Invalid null map.").size());
+
+		for (Map.Entry<? extends E, ? extends Number> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue().intValue());
+		}
+	}
+
+	//bag behaviour
+	@Override
+	public int size() {
+		if (size > Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+
+		return (int)size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nodes.isEmpty();
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return nodes.containsKey(object);
+	}
+
+	@Override
+	public int count(Object object) {
+		Node<E> node = nodes.get(object);
+		return (node == null ? 0 : node.bucket.count);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new NodeIterator<E>() {
+			//mutable state
+			private int countdown = 0;
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				return countdown > 0 || hasNextNode();
+			}
+
+			@Override
+			public E next() {
+				checkNext(hasNext());
+				checkModification(modification);
+				setRemovable(true);
+
+				if (countdown == 0) {
+					countdown = nextNode().bucket.count;
+				}
+
+				countdown--;
+				return current.element;
+			}
+
+			@Override
+			public void remove() {
+				checkRemovable();
+				checkModification(modification);
+				setRemovable(false);
+
+				//the remaining countdown is left untouched, it counts the occurrences still to be returned
+				if (current.bucket.count > 1) {
+					move(current, current.bucket.count - 1);
+				} else {
+					removeNode();
+				}
+
+				setModification(modify(-1));
+			}
+		};
+	}
+
+	/**
+	 * This field is initialized to contain an instance of the
+	 * view the first time this view is requested. The view
+	 * is stateless, so there's no reason to create more than one.
+	 */
+	private transient volatile Set<Entry<E>> entries;
+
+	@Override
+	public Set<Entry<E>> asEntrySet() {
+		if (entries == null) {
+			entries = new AbstractSet<Entry<E>>() {
+				@Override
+				public int size() {
+					return nodes.size();
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					if (!(object instanceof Entry)) {
+						return false;
+					}
+
+					Node<E> node = nodes.get(((Entry<?>)object).getElement());
+					return node != null && node.bucket.count == ((Entry<?>)object).getCount();
+				}
+
+				@Override
+				public boolean remove(Object object) {
+					if (!(object instanceof Entry)) {
+						return false;
+					}
+
+					Node<E> node = nodes.get(((Entry<?>)object).getElement());
+
+					if (node != null && node.bucket.count == ((Entry<?>)object).getCount()) {
+						nodes.remove(node.element);
+						unlink(node);
+						modify(-node.bucket.count);
+						return true;
+					}
+
+					return false;
+				}
+
+				@Override
+				public void clear() {
+					FrequencyBag.this.clear();
+				}
+
+				@Override
+				public Iterator<Entry<E>> iterator() {
+					return new NodeIterator<Entry<E>>() {
+						//iterator behaviour
+						@Override
+						public boolean hasNext() {
+							return hasNextNode();
+						}
+
+						@Override
+						public Entry<E> next() {
+							checkNext(hasNext());
+							checkModification(modification);
+							setRemovable(true);
+
+							return new Entry<E>() {
+								//immutable state
+								private final Node<E> node = nextNode();
+
+								//entry behaviour
+								@Override
+								public E getElement() {
+									return node.element;
+								}
+
+								@Override
+								public int getCount() {
+									return node.bucket.count;
+								}
+
+								@Override
+								public int setCount(int count) {
+									if (count < 1) {
+										throw new IllegalArgumentException("Invalid count value for entry: " + toString() + ".");
+									}
+
+									int result = node.bucket.count;
+									move(node, count);
+									setModification(modify(count - result));
+									return result;
+								}
+
+								//object behaviour
+								@Override
+								public int hashCode() {
+									return Objects.hashCode(node.element) ^ node.bucket.count;
+								}
+
+								@Override
+								public boolean equals(Object object) {
+									return object == this || (
+										object instanceof Entry
+										&& Objects.equals(node.element, ((Entry<?>)object).getElement())
+										&& node.bucket.count == ((Entry<?>)object).getCount()
+									);
+								}
+
+								@Override
+								public String toString() {
+									return node.element + "=" + node.bucket.count;
+								}
+							};
+						}
+
+						@Override
+						public void remove() {
+							checkRemovable();
+							checkModification(modification);
+							setRemovable(false);
+
+							removeNode();
+							setModification(modify(-current.bucket.count));
+						}
+					};
+				}
+			};
+		}
+
+		return entries;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation walks the buckets in ascending order of count,
+	 * so no entry object is allocated and the elements are passed to the
+	 * action in the same order as {@link #countIterator(boolean)
+	 * countIterator(true)} returns them.</p>
+	 *
+	 * @throws ConcurrentModificationException if it is detected
+	 *         that the action modified this bag
+	 */
+	@Override
+	public void forEachEntry(ObjIntConsumer<? super E> action) {
+		Objects.requireNonNull(action, "Invalid null action.");
+		int expected = modification;
+
+		for (Bucket<E> bucket = lowest; bucket != null && modification == expected; bucket = bucket.next) {
+			for (Node<E> node = bucket.first; node != null && modification == expected; node = node.next) {
+				action.accept(node.element, bucket.count);
+			}
+		}
+
+		if (modification != expected) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * The index over the entries of this bag built by the last sample, along
+	 * with the modification count it was built at.
+	 */
+	private transient volatile Sampler<E> sampler;
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation keeps the index built over the entries of this
+	 * bag until an element is added, removed or counted again, so repeated draws from an unmodified bag run in
+	 * logarithmic time in the number of distinct elements.</p>
+	 */
+	@Override
+	public E sample(Random random) {
+		Objects.requireNonNull(random, "Invalid null random.");
+		return sampler().next(random);
+	}
+
+	@Override
+	public Stream<E> sample(Random random, long size, boolean replacement) {
+		Objects.requireNonNull(random, "Invalid null random.");
+		return sampler().stream(random, size, replacement);
+	}
+
+	@Override
+	public int put(E element, int amount) {
+		Node<E> node = nodes.get(element);
+
+		if (node != null) {
+			int result = node.bucket.count;
+
+			if (amount > Integer.MAX_VALUE - result) {
+				throw new IllegalArgumentException("Invalid count overflow: " + result + " + " + amount + ".");
+			}
+
+			if (amount == 0) {
+				return result;
+			} else if (result + amount > 0) {
+				move(node, result + amount);
+				modify(amount);
+			} else {
+				nodes.remove(element);
+				unlink(node);
+				modify(-result);
+			}
+
+			return result;
+		} else if (amount > 0) {
+			insert(element, amount);
+			modify(amount);
+		}
+
+		return 0;
+	}
+
+	@Override
+	public int set(E element, int count) {
+		Node<E> node = nodes.get(element);
+
+		if (node != null) {
+			int result = node.bucket.count;
+
+			if (count > 0) {
+				move(node, count);
+				modify(count - result);
+			} else {
+				nodes.remove(element);
+				unlink(node);
+				modify(-result);
+			}
+
+			return result;
+		} else if (count > 0) {
+			insert(element, count);
+			modify(count);
+		}
+
+		return 0;
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		Node<E> node = nodes.get(object);
+
+		if (node == null) {
+			return false;
+		}
+
+		if (node.bucket.count > 1) {
+			move(node, node.bucket.count - 1);
+		} else {
+			nodes.remove(object);
+			unlink(node);
+		}
+
+		modify(-1);
+		return true;
+	}
+
+	@Override
+	public int delete(Object object) {
+		Node<E> node = nodes.remove(object);
+
+		if (node == null) {
+			return 0;
+		}
+
+		unlink(node);
+		modify(-node.bucket.count);
+		return node.bucket.count;
+	}
+
+	@Override
+	public void clear() {
+		if (!nodes.isEmpty()) {
+			nodes.clear();
+			lowest = null;
+			highest = null;
+			modify(-size);
+		}
+	}
+
+	//frequency bag behaviour
+	/**
+	 * Returns an element with the highest count in this bag, the one which
+	 * reached that count first if there are several.
+	 *
+	 * @return an element with the highest count in this bag
+	 * @throws NoSuchElementException if this bag is empty
+	 */
+	public E mostFrequent() {
+		if (highest == null) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		return highest.first.element;
+	}
+
+	/**
+	 * Returns an element with the lowest count in this bag, the one which
+	 * reached that count first if there are several.
+	 *
+	 * @return an element with the lowest count in this bag
+	 * @throws NoSuchElementException if this bag is empty
+	 */
+	public E leastFrequent() {
+		if (lowest == null) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		return lowest.first.element;
+	}
+
+	/**
+	 * Returns an iterator over the distinct elements of this bag and their
+	 * counts, in ascending or descending order of count. Elements with the
+	 * same count are returned in the order they reached that count. The
+	 * entries are immutable snapshots, and the iterator supports the
+	 * <tt>remove</tt> operation, which removes all the occurrences of the
+	 * last element returned. Taking the first <tt>k</tt> entries costs time
+	 * proportional to <tt>k</tt>.
+	 *
+	 * @param ascending <tt>true</tt> to start from the lowest count,
+	 *        <tt>false</tt> to start from the highest
+	 * @return an iterator over the entries of this bag in order of count
+	 */
+	public Iterator<Entry<E>> countIterator(boolean ascending) {
+		return new AbstractIterator<Entry<E>>() {
+			//mutable state
+			private Node<E> next = (ascending ? lowest : highest) == null ? null : (ascending ? lowest : highest).first;
+			private Node<E> current;
+
+			//initializer
+			{
+				setRemovable(false);
+				setModification(modification);
+			}
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Entry<E> next() {
+				checkNext(hasNext());
+				checkModification(modification);
+				setRemovable(true);
+
+				current = next;
+
+				if (current.next != null) {
+					next = current.next;
+				} else {
+					Bucket<E> bucket = (ascending ? current.bucket.next : current.bucket.previous);
+					next = (bucket == null ? null : bucket.first);
+				}
+
+				return new SimpleImmutableEntry<>(current.element, current.bucket.count);
+			}
+
+			@Override
+			public void remove() {
+				checkRemovable();
+				checkModification(modification);
+				setRemovable(false);
+
+				nodes.remove(current.element);
+				unlink(current);
+				setModification(modify(-current.bucket.count));
+			}
+		};
+	}
+
+	/**
+	 * Returns a new list with the elements whose count in this bag is the
+	 * specified count, in the order they reached that count. Finding them
+	 * walks the buckets from the nearest end of the range of counts, and
+	 * does not depend on the number of distinct elements.
+	 *
+	 * @param count the count of the elements to be returned
+	 * @return a new list with the elements with the specified count
+	 */
+	public List<E> elementsWithCount(int count) {
+		List<E> result = new ArrayList<>();
+
+		if (lowest == null || count < lowest.count || count > highest.count) {
+			return result;
+		}
+
+		Bucket<E> bucket;
+
+		if (count - lowest.count <= highest.count - count) {
+			for (bucket = lowest; bucket.count < count; bucket = bucket.next) {
+				//empty
+			}
+		} else {
+			for (bucket = highest; bucket.count > count; bucket = bucket.previous) {
+				//empty
+			}
+		}
+
+		if (bucket.count == count) {
+			for (Node<E> node = bucket.first; node != null; node = node.next) {
+				result.add(node.element);
+			}
+		}
+
+		return result;
+	}
+
+	//cloneable behaviour
+	@Override
+	public Object clone() {
+		try {
+			FrequencyBag<E> clone = (FrequencyBag<E>)super.clone();
+			clone.nodes = new HashMap<>(nodes.size());
+			clone.lowest = null;
+			clone.highest = null;
+			clone.entries = null;
+			clone.elements = null;
+			//inserted in ascending order of count, each bucket is appended to the highest one
+			forEachEntry(clone::insert);
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	//inherited
+
+	//serializable behaviour
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		output.writeInt(nodes.size());
+
+		for (Bucket<E> bucket = lowest; bucket != null; bucket = bucket.next) {
+			for (Node<E> node = bucket.first; node != null; node = node.next) {
+				output.writeObject(node.element);
+				output.writeInt(bucket.count);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		int length = input.readInt();
+
+		if (length < 0) {
+			throw new InvalidObjectException("Invalid number of entries: " + length + ".");
+		}
+
+		nodes = new HashMap<>(length);
+
+		for (int entry = 0; entry < length; entry++) {
+			put((E)input.readObject(), input.readInt());
+		}
+	}
+
+	//miscellaneous
+	/**
+	 * Returns the index over the entries of this bag, building it again if
+	 * this bag was modified since it was last built.
+	 */
+	private Sampler<E> sampler() {
+		Sampler<E> result = sampler;
+
+		if (result == null || result.modification != modification) {
+			result = new Sampler<>(this, modification);
+			sampler = result;
+		}
+
+		return result;
+	}
+
+	private int modify(long amount) {
+		size += amount;
+		assert size >= 0 : "Invalid bag negative size.";
+		return ++modification;
+	}
+
+	/**
+	 * Adds a node for the specified element, which is not in this bag, to
+	 * the bucket of the specified count.
+	 */
+	private void insert(E element, int count) {
+		Node<E> node = new Node<>(element);
+		nodes.put(element, node);
+		move(node, count);
+	}
+
+	/**
+	 * Moves the specified node to the end of the bucket of the specified
+	 * count, which must be positive, creating that bucket if needed. The
+	 * search starts from the current bucket of the node, or from the nearest
+	 * end of the list of buckets for a new node, so a change of one
+	 * occurrence runs in constant time.
+	 */
+	private void move(Node<E> node, int count) {
+		assert count > 0;
+		Bucket<E> from = node.bucket;
+
+		if (from != null && from.count == count) {
+			return;
+		}
+
+		if (from == null) {
+			from = (highest != null && count >= highest.count) ? highest : lowest;
+		}
+
+		Bucket<E> previous = null;
+		Bucket<E> next = null;
+		Bucket<E> target = null;
+
+		if (from != null && from.count < count) {
+			for (previous = from; previous.next != null && previous.next.count <= count; previous = previous.next) {
+				//empty
+			}
+
+			next = previous.next;
+			target = (previous.count == count ? previous : null);
+		} else if (from != null) {
+			for (next = from; next.previous != null && next.previous.count >= count; next = next.previous) {
+				//empty
+			}
+
+			previous = next.previous;
+			target = (next.count == count ? next : null);
+		}
+
+		if (target == null) {
+			target = new Bucket<>(count);
+			target.previous = previous;
+			target.next = next;
+
+			if (previous == null) {
+				lowest = target;
+			} else {
+				previous.next = target;
+			}
+
+			if (next == null) {
+				highest = target;
+			} else {
+				next.previous = target;
+			}
+		}
+
+		if (node.bucket != null) {
+			unlink(node);
+		}
+
+		node.bucket = target;
+		node.previous = target.last;
+		node.next = null;
+
+		if (target.last == null) {
+			target.first = node;
+		} else {
+			target.last.next = node;
+		}
+
+		target.last = node;
+	}
+
+	/**
+	 * Unlinks the specified node from its bucket, and the bucket from the
+	 * list if it becomes empty. The node keeps its bucket, so its last count
+	 * can still be read.
+	 */
+	private void unlink(Node<E> node) {
+		Bucket<E> bucket = node.bucket;
+
+		if (node.previous == null) {
+			bucket.first = node.next;
+		} else {
+			node.previous.next = node.next;
+		}
+
+		if (node.next == null) {
+			bucket.last = node.previous;
+		} else {
+			node.next.previous = node.previous;
+		}
+
+		node.previous = null;
+		node.next = null;
+
+		if (bucket.first == null) {
+			if (bucket.previous == null) {
+				lowest = bucket.next;
+			} else {
+				bucket.previous.next = bucket.next;
+			}
+
+			if (bucket.next == null) {
+				highest = bucket.previous;
+			} else {
+				bucket.next.previous = bucket.previous;
+			}
+		}
+	}
+
+	/**
+	 * Distinct element of the bag, linked to the other elements of its bucket.
+	 */
+	private static final class Node<E> {
+		//immutable state
+		private final E element;
+
+		//mutable state
+		private Bucket<E> bucket;
+		private Node<E> previous;
+		private Node<E> next;
+
+		//constructors
+		Node(E element) {
+			this.element = element;
+		}
+	}
+
+	/**
+	 * Elements sharing the same count, linked to the buckets with the nearest
+	 * lower and higher counts.
+	 */
+	private static final class Bucket<E> {
+		//immutable state
+		private final int count;
+
+		//mutable state
+		private Node<E> first;
+		private Node<E> last;
+		private Bucket<E> previous;
+		private Bucket<E> next;
+
+		//constructors
+		Bucket(int count) {
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Iterator over the nodes of the hash map, which unlinks the nodes it
+	 * removes from their buckets.
+	 */
+	private abstract class NodeIterator<T> extends AbstractIterator<T> {
+		//immutable state
+		private final Iterator<Node<E>> iterator = nodes.values().iterator();
+
+		//mutable state
+		protected Node<E> current;
+
+		//initializer
+		{
+			setRemovable(false);
+			setModification(modification);
+		}
+
+		protected final boolean hasNextNode() {
+			return iterator.hasNext();
+		}
+
+		protected final Node<E> nextNode() {
+			return current = iterator.next();
+		}
+
+		protected final void removeNode() {
+			iterator.remove();
+			unlink(current);
+		}
+	}
+}
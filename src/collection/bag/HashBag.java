@@ -11,6 +11,13 @@ import java.util.Objects;
 public class HashBag<E> extends AbstractMapBag<E> implements Bag<E>, Serializable, Cloneable {
 	//static state
 	private static final long serialVersionUID = -1L;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	//mutable state
+	/**
+	 * The load factor of the backing map, which does not expose it.
+	 */
+	transient float loadFactor = .75f;
 
 	//constructors
 	public HashBag() {
@@ -23,14 +30,16 @@ public class HashBag<E> extends AbstractMapBag<E> implements Bag<E>, Serializabl
 
 	public HashBag(int initialCapacity, float loadFactor) {
 		map = new HashMap<>(initialCapacity, loadFactor);
+		this.loadFactor = loadFactor;
 	}
 
 	public HashBag(Collection<? extends E> collection) {
 		Objects.requireNonNull(collection, "Invalid null collection.");
 
 		if (collection instanceof AbstractMapBag) {
-			size = ((AbstractMapBag)collection).size;
+			size = ((AbstractMapBag)collection).occurrences();
 			map = new HashMap<>(((AbstractMapBag)collection).map);
+			detach();
 		} else {
 			map = new HashMap<>(Math.max((int)((collection instanceof Bag ? ((Bag)collection).asEntrySet().size() : collection.size()) / .75f) + 1, 16));
 			addAll(collection);
@@ -51,17 +60,56 @@ public class HashBag<E> extends AbstractMapBag<E> implements Bag<E>, Serializabl
 	//cloneable behaviour
 	@Override
 	public Object clone() {
-		//TODO estudar e testar clone
 		try {
 			HashBag<E> clone = (HashBag<E>)super.clone();
-			clone.map = new HashMap<>(map);
-			//clone.map = (HashMap<E, Counter>)((HashMap<E, Counter>)map).clone();
+			clone.map = newMap(capacity(map.size()));
+			clone.map.putAll(map);
+			clone.detach();
+			clone.entries = null;
+			clone.elements = null;
 			return clone;
 		} catch (CloneNotSupportedException exception) {
 			throw new InternalError(exception);
 		}
 	}
 
+	//miscellaneous
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The backing map cannot grow ahead of time, so if it would double
+	 * more than once to hold the specified number of elements, it is
+	 * rebuilt at its final capacity instead, rehashing each entry once.</p>
+	 */
+	@Override
+	protected void ensureCapacity(int distinct) {
+		int capacity = capacity(distinct);
+
+		if (capacity > 2 * capacity(map.size())) {
+			Map<E, Counter> map = newMap(capacity);
+			map.putAll(this.map);
+			this.map = map;
+			modify(0);
+		}
+	}
+
+	/**
+	 * Returns a new, empty backing map with the specified capacity
+	 * and the load factor of this bag.
+	 */
+	Map<E, Counter> newMap(int capacity) {
+		return new HashMap<>(capacity, loadFactor);
+	}
+
+	/**
+	 * Returns the table size needed to hold the specified number
+	 * of elements without resizing.
+	 */
+	int capacity(int distinct) {
+		long capacity = Math.max((long)Math.ceil(distinct / (double)loadFactor), 16);
+		return (int)Math.min(Long.highestOneBit(capacity - 1) << 1, MAXIMUM_CAPACITY);
+	}
+
 	//object behaviour
 	//inherited
 }
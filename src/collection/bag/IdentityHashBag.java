@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 public class IdentityHashBag<E> extends AbstractMapBag<E> implements Serializable, Cloneable {
 	//static state
@@ -25,8 +26,9 @@ public class IdentityHashBag<E> extends AbstractMapBag<E> implements Serializabl
 		Objects.requireNonNull(collection, "Invalid null collection.");
 
 		if (collection instanceof AbstractMapBag) {
-			size = ((AbstractMapBag)collection).size;
+			size = ((AbstractMapBag)collection).occurrences();
 			map = new IdentityHashMap<>(((AbstractMapBag)collection).map);
+			detach();
 		} else {
 			map = new IdentityHashMap<>(Math.max((int)((collection instanceof Bag ? ((Bag)collection).asEntrySet().size() : collection.size()) / .75f) + 1, 16));
 			addAll(collection);
@@ -50,6 +52,9 @@ public class IdentityHashBag<E> extends AbstractMapBag<E> implements Serializabl
 		try {
 			IdentityHashBag<E> clone = (IdentityHashBag<E>)super.clone();
 			clone.map = new IdentityHashMap<>(map);
+			clone.detach();
+			clone.entries = null;
+			clone.elements = null;
 			return clone;
 		} catch (CloneNotSupportedException exception) {
 			throw new InternalError(exception);
@@ -58,4 +63,11 @@ public class IdentityHashBag<E> extends AbstractMapBag<E> implements Serializabl
 
 	//object behaviour
 	//inherited
+
+	//miscellaneous
+	@Override
+	boolean isEquivalent(Set<?> set) {
+		//no set in the platform compares by identity on its own
+		return false;
+	}
 }
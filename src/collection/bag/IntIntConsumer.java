@@ -0,0 +1,22 @@
+package collection.bag;
+
+/**
+ * Represents an operation that accepts an <tt>int</tt> element and its
+ * <tt>int</tt> count, and returns no result. This is the primitive
+ * specialization of {@link java.util.function.ObjIntConsumer} used to
+ * traverse the entries of an {@link IntHashBag} without boxing.
+ *
+ * @author Thiago Reis
+ * @see IntHashBag#forEachEntry(IntIntConsumer)
+ * @since 1.0
+ */
+@FunctionalInterface
+public interface IntIntConsumer {
+	/**
+	 * Performs this operation on the given element and count.
+	 *
+	 * @param element the element
+	 * @param count the number of occurrences of the element
+	 */
+	void accept(int element, int count);
+}
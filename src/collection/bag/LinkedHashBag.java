@@ -20,14 +20,16 @@ public class LinkedHashBag<E> extends HashBag<E> {
 
 	public LinkedHashBag(int initialCapacity, float loadFactor) {
 		map = new LinkedHashMap<>(initialCapacity, loadFactor);
+		this.loadFactor = loadFactor;
 	}
 
 	public LinkedHashBag(Collection<? extends E> collection) {
 		Objects.requireNonNull(collection, "Invalid null collection.");
 
 		if (collection instanceof AbstractMapBag) {
-			size = ((AbstractMapBag)collection).size;
+			size = ((AbstractMapBag)collection).occurrences();
 			map = new LinkedHashMap<>(((AbstractMapBag)collection).map);
+			detach();
 		} else {
 			map = new LinkedHashMap<>(Math.max((int)((collection instanceof Bag ? ((Bag)collection).asEntrySet().size() : collection.size()) / .75f) + 1, 16));
 			addAll(collection);
@@ -45,12 +47,10 @@ public class LinkedHashBag<E> extends HashBag<E> {
 		}
 	}
 
-	//cloneable behaviour
+	//miscellaneous
 	@Override
-	public Object clone() {
-		LinkedHashBag<E> clone = (LinkedHashBag<E>)super.clone();
-		clone.map = new LinkedHashMap<>(map);
-		return clone;
+	Map<E, Counter> newMap(int capacity) {
+		return new LinkedHashMap<>(capacity, loadFactor);
 	}
 
 	//object behaviour
@@ -0,0 +1,829 @@
+package collection.bag;
+
+import static java.util.Objects.requireNonNull;
+import collection.AbstractIterator;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A bag of <tt>long</tt> elements backed by an open addressing hash table.
+ * Elements and counts are kept in a <tt>long[]</tt> and a parallel
+ * <tt>int[]</tt>, so
+ * neither the elements nor their counters are ever boxed. The element
+ * <tt>0</tt> is kept outside the table, where it marks a free slot.
+ *
+ * <p>This class does not implement {@link Bag} itself, its methods take and
+ * return primitives instead. The {@link #asBag()} method returns a
+ * <tt>Bag&lt;Long&gt;</tt> view for interoperability with code that
+ * already takes bags; the view is backed by this bag, so changes to one are
+ * reflected in the other, and its methods box their arguments and results.</p>
+ *
+ * <p>Note that this implementation is not synchronized. The iterators
+ * returned by the bag view are <i>fail-fast</i>, as is the
+ * {@link #forEachEntry(LongIntConsumer) forEachEntry} method.</p>
+ *
+ * @author Thiago Reis
+ * @see LongHashBag
+ * @see OpenHashBag
+ * @since 1.0
+ */
+public class LongHashBag implements Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+	private static final float DEFAULT_LOAD_FACTOR = .75f;
+
+	/**
+	 * Slot index representing the element <tt>0</tt>.
+	 */
+	private static final int ZERO = Integer.MIN_VALUE;
+
+	//immutable state
+	private final float loadFactor;
+
+	//mutable state
+	private transient long[] keys;
+	private transient int[] counts;
+	private transient int zero;
+	private transient int distinct;
+	private transient int threshold;
+
+	/**
+	 * The number of element occurrences contained in this bag.
+	 */
+	private transient long size = 0;
+
+	/**
+	 * The number of times this bag has been structurally modified.
+	 * This field is used to make iterators on the bag view fail-fast.
+	 * (See ConcurrentModificationException).
+	 */
+	private transient int modification = 0;
+
+	//constructors
+	public LongHashBag() {
+		this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public LongHashBag(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public LongHashBag(int initialCapacity, float loadFactor) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity + ".");
+		}
+
+		if (!(loadFactor > 0 && loadFactor < 1)) {
+			throw new IllegalArgumentException("Invalid load factor: " + loadFactor + ".");
+		}
+
+		this.loadFactor = loadFactor;
+		allocate(capacity(initialCapacity, loadFactor));
+	}
+
+	//bag behaviour
+	/**
+	 * Returns the number of element occurrences in this bag. If this bag
+	 * contains more than <tt>Integer.MAX_VALUE</tt> occurrences, returns
+	 * <tt>Integer.MAX_VALUE</tt>.
+	 *
+	 * @return the number of element occurrences in this bag
+	 */
+	public int size() {
+		if (size > Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+
+		return (int)size;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if this bag contains no element occurrences.
+	 *
+	 * @return <tt>true</tt> if this bag contains no element occurrences
+	 */
+	public boolean isEmpty() {
+		return distinct == 0 && zero == 0;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if this bag contains at least one occurrence of the specified element.
+	 *
+	 * @param  element element whose presence in this bag is to be tested
+	 * @return <tt>true</tt> if this bag contains at least one occurrence of the specified element
+	 */
+	public boolean contains(long element) {
+		return (element == 0 ? zero > 0 : probe(element) >= 0);
+	}
+
+	/**
+	 * Returns the number of occurrences of the specified element in this bag.
+	 *
+	 * @param  element element whose the number of occurrences in this bag is to be counted
+	 * @return the number of occurrences of the specified element in this bag
+	 *         or zero if this bag does not contain any occurrences of the specified element
+	 */
+	public int count(long element) {
+		if (element == 0) {
+			return zero;
+		}
+
+		int index = probe(element);
+		return (index < 0 ? 0 : counts[index]);
+	}
+
+	/**
+	 * Adds one occurrence of the specified element to this bag.
+	 *
+	 * @param  element element with which the occurrence is to be added to this bag
+	 * @return always <tt>true</tt>
+	 */
+	public boolean add(long element) {
+		put(element, 1);
+		return true;
+	}
+
+	/**
+	 * Adds to or removes from this bag the specified amount
+	 * of occurrences for the specified element.
+	 *
+	 * @param  element element with which the specified number of
+	 *         occurrences is to be added to or removed from this bag
+	 * @param  amount the number of occurrences to be added to (if positive)
+	 *         or removed from (if negative) this bag for the specified element
+	 * @return the previous element count, or zero if there was no occurrence for element
+	 */
+	public int put(long element, int amount) {
+		int index = (element == 0 ? ZERO : probe(element));
+
+		if (index == ZERO || index >= 0) {
+			int result = countAt(index);
+
+			if (amount > Integer.MAX_VALUE - result) {
+				throw new IllegalArgumentException("Invalid count overflow: " + result + " + " + amount + ".");
+			}
+
+			if (amount == 0 || result == 0 && amount < 0) {
+				return result;
+			} else if (result + amount > 0) {
+				countAt(index, result + amount);
+				modify(amount);
+			} else {
+				deleteAt(index);
+				modify(-result);
+			}
+
+			return result;
+		} else if (amount > 0) {
+			insert(-index - 1, element, amount);
+			modify(amount);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Changes the number of occurrences to the specified count for the
+	 * specified element. A count of zero or less deletes the element.
+	 *
+	 * @param  element element with which the specified number
+	 *         of occurrences is to be changed in this bag
+	 * @param  count the number of occurrences to be set
+	 *         for the specified element in this bag
+	 * @return the previous element count, or zero if there was no occurrence for element
+	 */
+	public int set(long element, int count) {
+		int index = (element == 0 ? ZERO : probe(element));
+
+		if (index == ZERO || index >= 0) {
+			int result = countAt(index);
+
+			if (count > 0) {
+				countAt(index, count);
+				modify(count - result);
+			} else if (result > 0) {
+				deleteAt(index);
+				modify(-result);
+			}
+
+			return result;
+		} else if (count > 0) {
+			insert(-index - 1, element, count);
+			modify(count);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Removes one occurrence of the specified element from this bag.
+	 *
+	 * @param  element element with which the occurrence is to be removed from this bag
+	 * @return <tt>true</tt> if this bag had one or more occurrences of the specified element
+	 */
+	public boolean remove(long element) {
+		return put(element, -1) > 0;
+	}
+
+	/**
+	 * Removes all occurrences of the specified element from this bag.
+	 *
+	 * @param  element element with which the occurrences are to be removed from this bag
+	 * @return the previous element count, or zero if there was no occurrence for element
+	 */
+	public int delete(long element) {
+		return set(element, 0);
+	}
+
+	/**
+	 * Removes all of the element occurrences from this bag.
+	 */
+	public void clear() {
+		if (!isEmpty()) {
+			Arrays.fill(keys, 0);
+			Arrays.fill(counts, 0);
+			zero = 0;
+			distinct = 0;
+			modify(-size);
+		}
+	}
+
+	/**
+	 * Performs the given action for each element-count pair of this bag,
+	 * without boxing and without allocating any entry object.
+	 *
+	 * @param  action the action to be performed for each element-count pair
+	 * @throws NullPointerException if the specified action is null
+	 * @throws ConcurrentModificationException if this bag is
+	 *         structurally modified by the action
+	 */
+	public void forEachEntry(LongIntConsumer action) {
+		requireNonNull(action, "Invalid null action.");
+		int expected = modification;
+
+		if (zero > 0) {
+			action.accept(0, zero);
+		}
+
+		long[] keys = this.keys;
+		int[] counts = this.counts;
+
+		for (int index = 0; index < keys.length && modification == expected; index++) {
+			if (keys[index] != 0) {
+				action.accept(keys[index], counts[index]);
+			}
+		}
+
+		if (modification != expected) {
+			throw new ConcurrentModificationException("The collection has been modified during the iteration.");
+		}
+	}
+
+	/**
+	 * This field is initialized to contain an instance of the
+	 * view the first time this view is requested. The view
+	 * is stateless, so there's no reason to create more than one.
+	 */
+	private transient volatile Bag<Long> bag;
+
+	/**
+	 * Returns a {@link Bag} view of this bag. The view is backed by this
+	 * bag, so changes to this bag are reflected in the view, and vice-versa.
+	 * The view does not permit null elements.
+	 *
+	 * @return a bag view of this bag
+	 */
+	public Bag<Long> asBag() {
+		if (bag == null) {
+			bag = new AbstractBag<Long>() {
+				@Override
+				public int size() {
+					return LongHashBag.this.size();
+				}
+
+				@Override
+				public boolean isEmpty() {
+					return LongHashBag.this.isEmpty();
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					return object instanceof Long && LongHashBag.this.contains((Long)object);
+				}
+
+				@Override
+				public int count(Object object) {
+					return (object instanceof Long ? LongHashBag.this.count((Long)object) : 0);
+				}
+
+				@Override
+				public Iterator<Long> iterator() {
+					return new TableIterator<Long>() {
+						//mutable state
+						private int countdown = 0;
+
+						//iterator behaviour
+						@Override
+						public boolean hasNext() {
+							return countdown > 0 || hasNextSlot();
+						}
+
+						@Override
+						public Long next() {
+							checkNext(hasNext());
+							checkModification(modification);
+							setRemovable(true);
+
+							if (countdown == 0) {
+								countdown = countAt(nextSlot());
+							}
+
+							countdown--;
+							return keyAt(current);
+						}
+
+						@Override
+						public void remove() {
+							checkRemovable();
+							checkModification(modification);
+							setRemovable(false);
+
+							if (countAt(current) > 1) {
+								countAt(current, countAt(current) - 1);
+							} else {
+								removeSlot();
+							}
+
+							setModification(modify(-1));
+						}
+					};
+				}
+
+				/**
+				 * This field is initialized to contain an instance of the
+				 * view the first time this view is requested. The view
+				 * is stateless, so there's no reason to create more than one.
+				 */
+				private transient volatile Set<Entry<Long>> entries;
+
+				@Override
+				public Set<Entry<Long>> asEntrySet() {
+					if (entries == null) {
+						entries = new AbstractSet<Entry<Long>>() {
+							@Override
+							public int size() {
+								return distinct + (zero > 0 ? 1 : 0);
+							}
+
+							@Override
+							public boolean contains(Object object) {
+								return object instanceof Entry
+									&& ((Entry<?>)object).getElement() instanceof Long
+									&& ((Entry<?>)object).getCount() > 0
+									&& LongHashBag.this.count((Long)((Entry<?>)object).getElement()) == ((Entry<?>)object).getCount();
+							}
+
+							@Override
+							public boolean remove(Object object) {
+								if (contains(object)) {
+									LongHashBag.this.delete((Long)((Entry<?>)object).getElement());
+									return true;
+								}
+
+								return false;
+							}
+
+							@Override
+							public void clear() {
+								LongHashBag.this.clear();
+							}
+
+							@Override
+							public Iterator<Entry<Long>> iterator() {
+								return new TableIterator<Entry<Long>>() {
+									//iterator behaviour
+									@Override
+									public boolean hasNext() {
+										return hasNextSlot();
+									}
+
+									@Override
+									public Entry<Long> next() {
+										checkNext(hasNext());
+										checkModification(modification);
+										setRemovable(true);
+
+										return new Entry<Long>() {
+											//immutable state
+											private final int index = nextSlot();
+											private final Long element = keyAt(index);
+
+											//entry behaviour
+											@Override
+											public Long getElement() {
+												return element;
+											}
+
+											@Override
+											public int getCount() {
+												return countAt(index);
+											}
+
+											@Override
+											public int setCount(int count) {
+												if (count < 1) {
+													throw new IllegalArgumentException("Invalid count value for entry: " + toString() + ".");
+												}
+
+												int result = countAt(index);
+												countAt(index, count);
+												setModification(modify(count - result));
+												return result;
+											}
+
+											//object behaviour
+											@Override
+											public int hashCode() {
+												return element.hashCode() ^ countAt(index);
+											}
+
+											@Override
+											public boolean equals(Object object) {
+												return object == this || (
+													object instanceof Entry
+													&& element.equals(((Entry<?>)object).getElement())
+													&& countAt(index) == ((Entry<?>)object).getCount()
+												);
+											}
+
+											@Override
+											public String toString() {
+												return element + "=" + countAt(index);
+											}
+										};
+									}
+
+									@Override
+									public void remove() {
+										checkRemovable();
+										checkModification(modification);
+										setRemovable(false);
+
+										int count = countAt(current);
+										removeSlot();
+										setModification(modify(-count));
+									}
+								};
+							}
+						};
+					}
+
+					return entries;
+				}
+
+				@Override
+				public int put(Long element, int amount) {
+					return LongHashBag.this.put(requireNonNull(element, "Invalid null element."), amount);
+				}
+
+				@Override
+				public int set(Long element, int count) {
+					return LongHashBag.this.set(requireNonNull(element, "Invalid null element."), count);
+				}
+
+				@Override
+				public boolean remove(Object object) {
+					return object instanceof Long && LongHashBag.this.remove((Long)object);
+				}
+
+				@Override
+				public int delete(Object object) {
+					return (object instanceof Long ? LongHashBag.this.delete((Long)object) : 0);
+				}
+
+				@Override
+				public void clear() {
+					LongHashBag.this.clear();
+				}
+
+				@Override
+				public int hashCode() {
+					return LongHashBag.this.hashCode();
+				}
+			};
+		}
+
+		return bag;
+	}
+
+	//cloneable behaviour
+	@Override
+	public Object clone() {
+		try {
+			LongHashBag clone = (LongHashBag)super.clone();
+			clone.keys = keys.clone();
+			clone.counts = counts.clone();
+			clone.bag = null;
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	/**
+	 * Returns the hash code value for this bag, defined to be the same
+	 * value returned by the <tt>hashCode</tt> method of the bag view.
+	 *
+	 * @return the hash code value for this bag
+	 */
+	@Override
+	public int hashCode() {
+		int hashcode = (zero > 0 ? Long.hashCode(0) ^ zero : 0);
+
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != 0) {
+				hashcode += Long.hashCode(keys[index]) ^ counts[index];
+			}
+		}
+
+		return hashcode;
+	}
+
+	/**
+	 * Compares the specified object with this bag for equality. Returns
+	 * <tt>true</tt> if the given object is also a <tt>LongHashBag</tt>
+	 * and both bags contain the same element-count pairs.
+	 *
+	 * @param  object object to be compared for equality with this bag
+	 * @return <tt>true</tt> if the specified object is equal to this bag
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (object == this) {
+			return true;
+		}
+
+		if (!(object instanceof LongHashBag)) {
+			return false;
+		}
+
+		LongHashBag surrogate = (LongHashBag)object;
+
+		if (size != surrogate.size || distinct != surrogate.distinct || zero != surrogate.zero) {
+			return false;
+		}
+
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != 0 && surrogate.count(keys[index]) != counts[index]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append('[');
+
+		forEachEntry((element, count) -> {
+			if (result.length() > 1) {
+				result
+					.append(',')
+					.append(' ');
+			}
+
+			result
+				.append(element)
+				.append('=')
+				.append(count);
+		});
+
+		return result.append(']').toString();
+	}
+
+	//serializable behaviour
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		output.writeInt(distinct + (zero > 0 ? 1 : 0));
+
+		if (zero > 0) {
+			output.writeLong(0);
+			output.writeInt(zero);
+		}
+
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != 0) {
+				output.writeLong(keys[index]);
+				output.writeInt(counts[index]);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		int length = input.readInt();
+
+		if (length < 0) {
+			throw new InvalidObjectException("Invalid number of entries: " + length + ".");
+		}
+
+		allocate(capacity(length, loadFactor));
+
+		for (int entry = 0; entry < length; entry++) {
+			put(input.readLong(), input.readInt());
+		}
+	}
+
+	//miscellaneous
+	private int modify(long amount) {
+		size += amount;
+		assert size >= 0 : "Invalid bag negative size.";
+		return ++modification;
+	}
+
+	private static int hash(long element) {
+		long hash = element * 0x9E3779B97F4A7C15L;
+		return (int)(hash ^ (hash >>> 32));
+	}
+
+	private static int capacity(int expected, float loadFactor) {
+		long capacity = Math.max((long)Math.ceil(expected / (double)loadFactor), expected + 1L);
+		return (capacity >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : Math.max(Integer.highestOneBit((int)capacity - 1) << 1, 2));
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		counts = new int[capacity];
+		threshold = Math.min((int)(capacity * loadFactor), capacity - 1);
+	}
+
+	private long keyAt(int index) {
+		return (index == ZERO ? 0 : keys[index]);
+	}
+
+	private int countAt(int index) {
+		return (index == ZERO ? zero : counts[index]);
+	}
+
+	private void countAt(int index, int count) {
+		if (index == ZERO) {
+			zero = count;
+		} else {
+			counts[index] = count;
+		}
+	}
+
+	/**
+	 * Returns the slot holding the specified non zero element, or
+	 * <tt>-(slot + 1)</tt> for the free slot where it would be inserted.
+	 */
+	private int probe(long element) {
+		int mask = keys.length - 1;
+		int index = hash(element) & mask;
+
+		for (long candidate; (candidate = keys[index]) != 0; index = (index + 1) & mask) {
+			if (candidate == element) {
+				return index;
+			}
+		}
+
+		return -index - 1;
+	}
+
+	private void insert(int index, long element, int count) {
+		if (distinct == threshold) {
+			if (keys.length == MAXIMUM_CAPACITY) {
+				throw new IllegalStateException("Bag capacity exceeded.");
+			}
+
+			rehash(keys.length << 1);
+			index = -probe(element) - 1;
+		}
+
+		keys[index] = element;
+		counts[index] = count;
+		distinct++;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		allocate(capacity);
+
+		int mask = capacity - 1;
+
+		for (int index = 0; index < oldKeys.length; index++) {
+			if (oldKeys[index] != 0) {
+				int slot = hash(oldKeys[index]) & mask;
+
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+
+				keys[slot] = oldKeys[index];
+				counts[slot] = oldCounts[index];
+			}
+		}
+	}
+
+	private void deleteAt(int index) {
+		if (index == ZERO) {
+			zero = 0;
+			return;
+		}
+
+		//backward shift, see OpenHashBag
+		int mask = keys.length - 1;
+		int hole = index;
+
+		for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+			int home = hash(keys[next]) & mask;
+
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				counts[hole] = counts[next];
+				hole = next;
+			}
+		}
+
+		keys[hole] = 0;
+		counts[hole] = 0;
+		distinct--;
+	}
+
+	/**
+	 * Iterates over the element zero, then over the occupied slots.
+	 * The slots scan starts right after a free slot and stops on it,
+	 * so a removal only moves slots that have not been visited yet.
+	 */
+	private abstract class TableIterator<T> extends AbstractIterator<T> {
+		//immutable state
+		private final int mask = keys.length - 1;
+		private final int end;
+
+		//mutable state
+		private boolean pending = zero > 0;
+		private int cursor;
+		protected int current;
+
+		//initializer
+		{
+			int slot = 0;
+
+			while (keys[slot] != 0) {
+				slot++;
+			}
+
+			end = slot;
+			cursor = (slot + 1) & mask;
+			setRemovable(false);
+			setModification(modification);
+		}
+
+		protected final boolean hasNextSlot() {
+			if (pending) {
+				return true;
+			}
+
+			while (cursor != end && keys[cursor] == 0) {
+				cursor = (cursor + 1) & mask;
+			}
+
+			return cursor != end;
+		}
+
+		protected final int nextSlot() {
+			if (pending) {
+				pending = false;
+				current = ZERO;
+			} else {
+				current = cursor;
+				cursor = (cursor + 1) & mask;
+			}
+
+			return current;
+		}
+
+		protected final void removeSlot() {
+			deleteAt(current);
+
+			if (current != ZERO) {
+				//the current slot may have been refilled by an unvisited slot
+				cursor = current;
+			}
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package collection.bag;
+
+/**
+ * Represents an operation that accepts a <tt>long</tt> element and its
+ * <tt>int</tt> count, and returns no result. This is the primitive
+ * specialization of {@link java.util.function.ObjIntConsumer} used to
+ * traverse the entries of a {@link LongHashBag} without boxing.
+ *
+ * @author Thiago Reis
+ * @see LongHashBag#forEachEntry(LongIntConsumer)
+ * @since 1.0
+ */
+@FunctionalInterface
+public interface LongIntConsumer {
+	/**
+	 * Performs this operation on the given element and count.
+	 *
+	 * @param element the element
+	 * @param count the number of occurrences of the element
+	 */
+	void accept(long element, int count);
+}
@@ -0,0 +1,26 @@
+package collection.bag;
+
+/**
+ * Represents a function that accepts an object-valued and an
+ * <tt>int</tt>-valued argument, and produces an <tt>int</tt>-valued
+ * result. This is the <tt>(reference, int, int)</tt> specialization of
+ * {@link java.util.function.BiFunction} used to compute the new count
+ * of an element from its current count.
+ *
+ * @param <T> the type of the object argument to the function
+ *
+ * @author Thiago Reis
+ * @see Bag#compute(Object, ObjIntToIntFunction)
+ * @since 1.0
+ */
+@FunctionalInterface
+public interface ObjIntToIntFunction<T> {
+	/**
+	 * Applies this function to the given arguments.
+	 *
+	 * @param object the first function argument
+	 * @param value the second function argument
+	 * @return the function result
+	 */
+	int applyAsInt(T object, int value);
+}
@@ -0,0 +1,823 @@
+package collection.bag;
+
+import collection.AbstractIterator;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntBinaryOperator;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Hash table based implementation of the <tt>Bag</tt> interface using open
+ * addressing. Where {@link HashBag} keeps a map from each element to a counter
+ * object, this bag keeps its elements in a single <tt>Object[]</tt> and their
+ * counts in a parallel <tt>int[]</tt>, so no node or counter is allocated per
+ * distinct element. This implementation permits the <tt>null</tt> element.
+ *
+ * <p>Collisions are resolved by linear probing and removals shift the
+ * following slots backwards, so the table never accumulates deleted markers.
+ * Probes only read the elements array, the counts array is touched once the
+ * element is found. The load factor must be lower than <tt>1</tt>, which
+ * guarantees that the table always has a free slot.</p>
+ *
+ * <p>Note that this implementation is not synchronized. The iterators
+ * returned by this bag's <tt>iterator</tt> method and by its collection views
+ * are <i>fail-fast</i>: if the bag is structurally modified at any time after
+ * the iterator is created, in any way except through the iterator's own
+ * <tt>remove</tt> method or the <tt>setCount</tt> method of an entry returned
+ * by it, the iterator throws a {@link java.util.ConcurrentModificationException}.</p>
+ *
+ * @param <E> the type of elements maintained by this bag
+ *
+ * @author Thiago Reis
+ * @see Bag
+ * @see AbstractBag
+ * @see HashBag
+ * @since 1.0
+ */
+public class OpenHashBag<E> extends AbstractBag<E> implements Bag<E>, Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+	private static final float DEFAULT_LOAD_FACTOR = .75f;
+
+	/**
+	 * Value representing the null element inside the table,
+	 * where a null reference marks a free slot.
+	 */
+	private static final Object NULL = new Object();
+
+	//immutable state
+	private final float loadFactor;
+
+	//mutable state
+	private transient Object[] keys;
+	private transient int[] counts;
+	private transient int distinct;
+	private transient int threshold;
+
+	/**
+	 * The number of element occurrences contained in this bag.
+	 */
+	private transient long size = 0;
+
+	/**
+	 * The number of times this bag has been structurally modified.
+	 * This field is used to make iterators on Collection-views of
+	 * the bag fail-fast. (See ConcurrentModificationException).
+	 */
+	private transient int modification = 0;
+
+	//constructors
+	public OpenHashBag() {
+		this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public OpenHashBag(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public OpenHashBag(int initialCapacity, float loadFactor) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity + ".");
+		}
+
+		if (!(loadFactor > 0 && loadFactor < 1)) {
+			throw new IllegalArgumentException("Invalid load factor: " + loadFactor + ".");
+		}
+
+		this.loadFactor = loadFactor;
+		allocate(capacity(initialCapacity, loadFactor));
+	}
+
+	public OpenHashBag(Collection<? extends E> collection) {
+		this(Objects.requireNonNull(collection, "Invalid null collection.") instanceof Bag ? ((Bag<?>)collection).asEntrySet().size() : collection.size(), DEFAULT_LOAD_FACTOR);
+		addAll(collection);
+	}
+
+	public OpenHashBag(Map<? extends E, ? extends Number> map) {
+		this(Objects.requireNonNull(map, "Invalid null map.").size(), DEFAULT_LOAD_FACTOR);
+
+		for (Map.Entry<? extends E, ? extends Number> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue().intValue());
+		}
+	}
+
+	//bag behaviour
+	@Override
+	public int size() {
+		if (size > Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+
+		return (int)size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return distinct == 0;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return probe(object) >= 0;
+	}
+
+	@Override
+	public int count(Object object) {
+		int index = probe(object);
+		return (index < 0 ? 0 : counts[index]);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new TableIterator<E>() {
+			//mutable state
+			private int countdown = 0;
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				return countdown > 0 || hasNextSlot();
+			}
+
+			@Override
+			public E next() {
+				checkNext(hasNext());
+				checkModification(modification);
+				setRemovable(true);
+
+				if (countdown == 0) {
+					countdown = counts[nextSlot()];
+				}
+
+				countdown--;
+				return unmask(keys[current]);
+			}
+
+			@Override
+			public void remove() {
+				checkRemovable();
+				checkModification(modification);
+				setRemovable(false);
+
+				//the remaining countdown is left untouched, it counts the occurrences still to be returned
+				if (counts[current] > 1) {
+					counts[current]--;
+				} else {
+					removeSlot();
+				}
+
+				setModification(modify(-1));
+			}
+		};
+	}
+
+	/**
+	 * This field is initialized to contain an instance of the
+	 * view the first time this view is requested. The view
+	 * is stateless, so there's no reason to create more than one.
+	 */
+	private transient volatile Set<Entry<E>> entries;
+
+	@Override
+	public Set<Entry<E>> asEntrySet() {
+		if (entries == null) {
+			entries = new AbstractSet<Entry<E>>() {
+				@Override
+				public int size() {
+					return distinct;
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					if (!(object instanceof Entry)) {
+						return false;
+					}
+
+					int index = probe(((Entry<?>)object).getElement());
+					return index >= 0 && counts[index] == ((Entry<?>)object).getCount();
+				}
+
+				@Override
+				public boolean remove(Object object) {
+					if (!(object instanceof Entry)) {
+						return false;
+					}
+
+					int index = probe(((Entry<?>)object).getElement());
+
+					if (index >= 0 && counts[index] == ((Entry<?>)object).getCount()) {
+						int count = counts[index];
+						delete(index);
+						modify(-count);
+						return true;
+					}
+
+					return false;
+				}
+
+				@Override
+				public void clear() {
+					OpenHashBag.this.clear();
+				}
+
+				@Override
+				public Iterator<Entry<E>> iterator() {
+					return new TableIterator<Entry<E>>() {
+						//iterator behaviour
+						@Override
+						public boolean hasNext() {
+							return hasNextSlot();
+						}
+
+						@Override
+						public Entry<E> next() {
+							checkNext(hasNext());
+							checkModification(modification);
+							setRemovable(true);
+
+							return new Entry<E>() {
+								//immutable state
+								private final int index = nextSlot();
+								private final E element = unmask(keys[index]);
+
+								//entry behaviour
+								@Override
+								public E getElement() {
+									return element;
+								}
+
+								@Override
+								public int getCount() {
+									return counts[index];
+								}
+
+								@Override
+								public int setCount(int count) {
+									if (count < 1) {
+										throw new IllegalArgumentException("Invalid count value for entry: " + toString() + ".");
+									}
+
+									int result = counts[index];
+									counts[index] = count;
+									setModification(modify(count - result));
+									return result;
+								}
+
+								//object behaviour
+								@Override
+								public int hashCode() {
+									return Objects.hashCode(element) ^ counts[index];
+								}
+
+								@Override
+								public boolean equals(Object object) {
+									return object == this || (
+										object instanceof Entry
+										&& Objects.equals(element, ((Entry<?>)object).getElement())
+										&& counts[index] == ((Entry<?>)object).getCount()
+									);
+								}
+
+								@Override
+								public String toString() {
+									return element + "=" + counts[index];
+								}
+							};
+						}
+
+						@Override
+						public void remove() {
+							checkRemovable();
+							checkModification(modification);
+							setRemovable(false);
+
+							int count = counts[current];
+							removeSlot();
+							setModification(modify(-count));
+						}
+					};
+				}
+			};
+		}
+
+		return entries;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation scans the table directly,
+	 * so no entry object is allocated.</p>
+	 *
+	 * @throws ConcurrentModificationException if it is detected
+	 *         that the action modified this bag
+	 */
+	@Override
+	public void forEachEntry(ObjIntConsumer<? super E> action) {
+		Objects.requireNonNull(action, "Invalid null action.");
+		int expected = modification;
+		Object[] keys = this.keys;
+		int[] counts = this.counts;
+
+		for (int index = 0; index < keys.length && modification == expected; index++) {
+			if (keys[index] != null) {
+				action.accept(unmask(keys[index]), counts[index]);
+			}
+		}
+
+		if (modification != expected) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation streams the range of slots of the table, so it
+	 * splits evenly, over the table allocated when this method is called,
+	 * so this bag should not be modified until the stream is consumed.
+	 * Each entry is an immutable snapshot of its element and count, use
+	 * {@link #forEachEntry(ObjIntConsumer)} or {@link #counts()} to
+	 * traverse this bag without allocating an entry per element.</p>
+	 */
+	@Override
+	public Stream<Entry<E>> entryStream() {
+		Object[] keys = this.keys;
+		int[] counts = this.counts;
+		return IntStream.range(0, keys.length).filter(index -> keys[index] != null).mapToObj(index -> new SimpleImmutableEntry<>(OpenHashBag.<E>unmask(keys[index]), counts[index]));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation streams the range of slots of the table,
+	 * reading the counts array directly.</p>
+	 */
+	@Override
+	public IntStream counts() {
+		Object[] keys = this.keys;
+		int[] counts = this.counts;
+		return IntStream.range(0, keys.length).filter(index -> keys[index] != null).map(index -> counts[index]);
+	}
+
+	/**
+	 * The index over the entries of this bag built by the last sample, along
+	 * with the modification count it was built at.
+	 */
+	private transient volatile Sampler<E> sampler;
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation keeps the index built over the entries of this
+	 * bag until this bag is modified, so repeated draws from an unmodified bag run in
+	 * logarithmic time in the number of distinct elements.</p>
+	 */
+	@Override
+	public E sample(Random random) {
+		Objects.requireNonNull(random, "Invalid null random.");
+		return sampler().next(random);
+	}
+
+	@Override
+	public Stream<E> sample(Random random, long size, boolean replacement) {
+		Objects.requireNonNull(random, "Invalid null random.");
+		return sampler().stream(random, size, replacement);
+	}
+
+	@Override
+	public int put(E element, int amount) {
+		int index = probe(element);
+
+		if (index >= 0) {
+			int result = counts[index];
+
+			if (amount > Integer.MAX_VALUE - result) {
+				throw new IllegalArgumentException("Invalid count overflow: " + result + " + " + amount + ".");
+			}
+
+			if (amount == 0) {
+				return result;
+			} else if (result + amount > 0) {
+				counts[index] = result + amount;
+				modify(amount);
+			} else {
+				delete(index);
+				modify(-result);
+			}
+
+			return result;
+		} else if (amount > 0) {
+			insert(-index - 1, element, amount);
+			modify(amount);
+		}
+
+		return 0;
+	}
+
+	@Override
+	public int set(E element, int count) {
+		int index = probe(element);
+
+		if (index >= 0) {
+			int result = counts[index];
+
+			if (count > 0) {
+				counts[index] = count;
+				modify(count - result);
+			} else {
+				delete(index);
+				modify(-result);
+			}
+
+			return result;
+		} else if (count > 0) {
+			insert(-index - 1, element, count);
+			modify(count);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation probes the table once, and updates the count
+	 * in place or inserts the element at the free slot the probe ended on.</p>
+	 *
+	 * @throws java.util.ConcurrentModificationException if it is detected
+	 *         that the remapping function modified this bag
+	 */
+	@Override
+	public int merge(E element, int count, IntBinaryOperator function) {
+		Objects.requireNonNull(function, "Invalid null function.");
+
+		int index = probe(element);
+		int expected = modification;
+		int result = (index < 0 ? count : function.applyAsInt(counts[index], count));
+		return update(index, element, result, expected);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation probes the table once, and updates the count
+	 * in place or inserts the element at the free slot the probe ended on.</p>
+	 *
+	 * @throws java.util.ConcurrentModificationException if it is detected
+	 *         that the remapping function modified this bag
+	 */
+	@Override
+	public int compute(E element, ObjIntToIntFunction<? super E> function) {
+		Objects.requireNonNull(function, "Invalid null function.");
+
+		int index = probe(element);
+		int expected = modification;
+		int result = function.applyAsInt(element, (index < 0 ? 0 : counts[index]));
+		return update(index, element, result, expected);
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		int index = probe(object);
+
+		if (index < 0) {
+			return false;
+		}
+
+		if (counts[index] > 1) {
+			counts[index]--;
+		} else {
+			delete(index);
+		}
+
+		modify(-1);
+		return true;
+	}
+
+	@Override
+	public int delete(Object object) {
+		int index = probe(object);
+
+		if (index < 0) {
+			return 0;
+		}
+
+		int result = counts[index];
+		delete(index);
+		modify(-result);
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		if (distinct > 0) {
+			Arrays.fill(keys, null);
+			Arrays.fill(counts, 0);
+			distinct = 0;
+			modify(-size);
+		}
+	}
+
+	//cloneable behaviour
+	@Override
+	public Object clone() {
+		try {
+			OpenHashBag<E> clone = (OpenHashBag<E>)super.clone();
+			clone.keys = keys.clone();
+			clone.counts = counts.clone();
+			clone.entries = null;
+			clone.elements = null;
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	@Override
+	public int hashCode() {
+		int hashcode = 0;
+
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != null) {
+				hashcode += Objects.hashCode(unmask(keys[index])) ^ counts[index];
+			}
+		}
+
+		return hashcode;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (object == this) {
+			return true;
+		}
+
+		if (!(object instanceof Bag)) {
+			return false;
+		}
+
+		Bag<?> surrogate = (Bag<?>)object;
+
+		if (size() != surrogate.size() || distinct != surrogate.asEntrySet().size()) {
+			return false;
+		}
+
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != null && surrogate.count(unmask(keys[index])) != counts[index]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	//serializable behaviour
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		output.writeInt(distinct);
+
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != null) {
+				output.writeObject(unmask(keys[index]));
+				output.writeInt(counts[index]);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		int length = input.readInt();
+
+		if (length < 0) {
+			throw new InvalidObjectException("Invalid number of entries: " + length + ".");
+		}
+
+		allocate(capacity(length, loadFactor));
+
+		for (int entry = 0; entry < length; entry++) {
+			put((E)input.readObject(), input.readInt());
+		}
+	}
+
+	//miscellaneous
+	/**
+	 * Returns the index over the entries of this bag, building it again if
+	 * this bag was modified since it was last built.
+	 */
+	private Sampler<E> sampler() {
+		Sampler<E> result = sampler;
+
+		if (result == null || result.modification != modification) {
+			result = new Sampler<>(this, modification);
+			sampler = result;
+		}
+
+		return result;
+	}
+
+	private int modify(long amount) {
+		size += amount;
+		assert size >= 0 : "Invalid bag negative size.";
+		return ++modification;
+	}
+
+	/**
+	 * Sets the count of the specified element, whose slot was probed
+	 * before applying a remapping function, to the computed result.
+	 */
+	private int update(int index, E element, int result, int expected) {
+		if (modification != expected) {
+			throw new ConcurrentModificationException();
+		}
+
+		if (index >= 0) {
+			int count = counts[index];
+
+			if (result > 0) {
+				counts[index] = result;
+				modify(result - count);
+				return result;
+			}
+
+			delete(index);
+			modify(-count);
+		} else if (result > 0) {
+			insert(-index - 1, element, result);
+			modify(result);
+			return result;
+		}
+
+		return 0;
+	}
+
+	private static Object mask(Object object) {
+		return (object == null ? NULL : object);
+	}
+
+	private static <E> E unmask(Object object) {
+		return (object == NULL ? null : (E)object);
+	}
+
+	private static int hash(Object key) {
+		//spreads the hash code bits, linear probing is sensitive to clustered low bits
+		int hash = key.hashCode() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int capacity(int expected, float loadFactor) {
+		long capacity = Math.max((long)Math.ceil(expected / (double)loadFactor), expected + 1L);
+		return (capacity >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : Math.max(Integer.highestOneBit((int)capacity - 1) << 1, 2));
+	}
+
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		counts = new int[capacity];
+		threshold = Math.min((int)(capacity * loadFactor), capacity - 1);
+	}
+
+	/**
+	 * Returns the slot holding the specified object, or
+	 * <tt>-(slot + 1)</tt> for the free slot where it would be inserted.
+	 */
+	private int probe(Object object) {
+		Object key = mask(object);
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+
+		for (Object candidate; (candidate = keys[index]) != null; index = (index + 1) & mask) {
+			if (candidate == key || candidate.equals(key)) {
+				return index;
+			}
+		}
+
+		return -index - 1;
+	}
+
+	private void insert(int index, E element, int count) {
+		if (distinct == threshold) {
+			if (keys.length == MAXIMUM_CAPACITY) {
+				throw new IllegalStateException("Bag capacity exceeded.");
+			}
+
+			rehash(keys.length << 1);
+			index = -probe(element) - 1;
+		}
+
+		keys[index] = mask(element);
+		counts[index] = count;
+		distinct++;
+	}
+
+	private void rehash(int capacity) {
+		Object[] oldKeys = keys;
+		int[] oldCounts = counts;
+		allocate(capacity);
+
+		int mask = capacity - 1;
+
+		for (int index = 0; index < oldKeys.length; index++) {
+			if (oldKeys[index] != null) {
+				int slot = hash(oldKeys[index]) & mask;
+
+				while (keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+
+				keys[slot] = oldKeys[index];
+				counts[slot] = oldCounts[index];
+			}
+		}
+	}
+
+	/**
+	 * Frees the specified slot, shifting backwards the following
+	 * slots of the cluster which can be moved closer to their home.
+	 * Slots are only ever moved from later to earlier positions of
+	 * their cluster, which is what keeps the iterators consistent.
+	 */
+	private void delete(int index) {
+		int mask = keys.length - 1;
+		int hole = index;
+
+		for (int next = (hole + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+			int home = hash(keys[next]) & mask;
+
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				counts[hole] = counts[next];
+				hole = next;
+			}
+		}
+
+		keys[hole] = null;
+		counts[hole] = 0;
+		distinct--;
+	}
+
+	/**
+	 * Iterates over the occupied slots. The scan starts right after a
+	 * free slot and stops on it, so no cluster wraps around the scan,
+	 * and a removal only moves slots that have not been visited yet.
+	 */
+	private abstract class TableIterator<T> extends AbstractIterator<T> {
+		//immutable state
+		private final int mask = keys.length - 1;
+		private final int end;
+
+		//mutable state
+		private int cursor;
+		protected int current = -1;
+
+		//initializer
+		{
+			int slot = 0;
+
+			while (keys[slot] != null) {
+				slot++;
+			}
+
+			end = slot;
+			cursor = (slot + 1) & mask;
+			setRemovable(false);
+			setModification(modification);
+		}
+
+		protected final boolean hasNextSlot() {
+			while (cursor != end && keys[cursor] == null) {
+				cursor = (cursor + 1) & mask;
+			}
+
+			return cursor != end;
+		}
+
+		protected final int nextSlot() {
+			current = cursor;
+			cursor = (cursor + 1) & mask;
+			return current;
+		}
+
+		protected final void removeSlot() {
+			delete(current);
+			//the current slot may have been refilled by an unvisited slot
+			cursor = current;
+		}
+	}
+}
@@ -0,0 +1,1325 @@
+package collection.bag;
+
+import static java.util.Objects.requireNonNull;
+import collection.AbstractIterator;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A <tt>NavigableBag</tt> implementation backed by a balanced binary search
+ * tree (an AVL tree) whose nodes also hold the number of occurrences in their
+ * subtree. The elements are kept sorted according to their natural ordering,
+ * or by a comparator provided at creation time, and this bag does not permit
+ * <tt>null</tt> elements.
+ *
+ * <p>Besides the operations of {@link TreeBag}, the subtree counts support
+ * order statistics in logarithmic time: the occurrence at a given position
+ * ({@link #select(long)}), the position of an element ({@link #rank(Object)}),
+ * the number of occurrences within a range ({@link #countInRange(Object, Object)})
+ * and percentiles ({@link #percentile(double)}, {@link #median()}), which
+ * makes this bag fit for histograms such as latency distributions:</p>
+ *
+ * <pre>
+ * OrderStatisticTreeBag&lt;Long&gt; latencies = new OrderStatisticTreeBag&lt;&gt;();
+ *     ...
+ * long p99 = latencies.percentile(99);
+ * </pre>
+ *
+ * <p>The <tt>count</tt>, <tt>put</tt>, <tt>set</tt>, <tt>remove</tt> and
+ * <tt>delete</tt> operations, the navigation methods and the order
+ * statistics take <i>O(log n)</i> time, where <i>n</i> is the number of
+ * distinct elements. Changing the count of a contained element only
+ * updates the subtree counts along its path, the tree is rebalanced
+ * when an element is inserted or removed.</p>
+ *
+ * <p>The views returned by <tt>subBag</tt>, <tt>headBag</tt>,
+ * <tt>tailBag</tt> and <tt>descendingBag</tt> write through to this bag and
+ * support the order statistics as well, relative to their range and order.
+ * The <tt>size</tt> method of a view also takes logarithmic time, while the
+ * <tt>size</tt> method of its <tt>asEntrySet</tt> view counts the elements
+ * within its range.</p>
+ *
+ * <p>Note that this implementation is not synchronized. The iterators
+ * returned by this bag's <tt>iterator</tt> method and by its collection views
+ * are <i>fail-fast</i>: if the bag is structurally modified at any time after
+ * the iterator is created, in any way except through the iterator's own
+ * <tt>remove</tt> method or the <tt>setCount</tt> method of an entry returned
+ * by it, the iterator throws a {@link java.util.ConcurrentModificationException}.</p>
+ *
+ * @param <E> the type of elements maintained by this bag
+ *
+ * @author Thiago Reis
+ * @see NavigableBag
+ * @see TreeBag
+ * @since 1.0
+ */
+public class OrderStatisticTreeBag<E> extends AbstractBag<E> implements NavigableBag<E>, Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+
+	//immutable state
+	/**
+	 * The comparator used to maintain order in this bag,
+	 * or null if it uses the natural ordering of its elements.
+	 */
+	private final Comparator<? super E> comparator;
+
+	/**
+	 * Whether this bag traverses the tree in descending order.
+	 */
+	private final boolean descending;
+
+	//mutable state
+	/**
+	 * The bag holding the tree, which is this bag itself unless it is a view.
+	 * The tree fields below are only used in the holding bag.
+	 */
+	private transient OrderStatisticTreeBag<E> base;
+	private transient Node<E> root;
+	private transient int distinct = 0;
+
+	/**
+	 * The number of times this bag has been structurally modified.
+	 * This field is used to make iterators on Collection-views of
+	 * the bag fail-fast. (See ConcurrentModificationException).
+	 */
+	private transient int modification = 0;
+
+	/**
+	 * The range of a view, in ascending order, unbounded at
+	 * either end if <tt>fromStart</tt> or <tt>toEnd</tt> is set.
+	 */
+	private transient E low;
+	private transient E high;
+	private transient boolean lowInclusive;
+	private transient boolean highInclusive;
+	private transient boolean fromStart = true;
+	private transient boolean toEnd = true;
+
+	//constructors
+	private OrderStatisticTreeBag(OrderStatisticTreeBag<E> base, boolean fromStart, E low, boolean lowInclusive, boolean toEnd, E high, boolean highInclusive, boolean descending) {
+		if (!fromStart && !toEnd && base.compare(low, high) > 0) {
+			throw new IllegalArgumentException("Invalid range, fromElement > toElement.");
+		}
+
+		this.comparator = base.comparator;
+		this.descending = descending;
+		this.base = base;
+		this.fromStart = fromStart;
+		this.low = low;
+		this.lowInclusive = lowInclusive;
+		this.toEnd = toEnd;
+		this.high = high;
+		this.highInclusive = highInclusive;
+	}
+
+	public OrderStatisticTreeBag() {
+		this.comparator = null;
+		this.descending = false;
+		this.base = this;
+	}
+
+	public OrderStatisticTreeBag(Comparator<? super E> comparator) {
+		this.comparator = requireNonNull(comparator, "Invalid null comparator.");
+		this.descending = false;
+		this.base = this;
+	}
+
+	public OrderStatisticTreeBag(Collection<? extends E> collection) {
+		this();
+		addAll(requireNonNull(collection, "Invalid null collection."));
+	}
+
+	public OrderStatisticTreeBag(Map<? extends E, ? extends Number> map) {
+		this();
+		requireNonNull(map, "Invalid null map.");
+
+		for (Map.Entry<? extends E, ? extends Number> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue().intValue());
+		}
+	}
+
+	public OrderStatisticTreeBag(SortedBag<E> bag) {
+		this.comparator = requireNonNull(bag, "Invalid null bag.").comparator();
+		this.descending = false;
+		this.base = this;
+		addAll(bag);
+	}
+
+	//order statistic behaviour
+	/**
+	 * Returns the element occurrence at the specified position of this bag,
+	 * in its iteration order. This operation takes logarithmic time.
+	 *
+	 * @param  index the position of the occurrence, starting at <tt>zero</tt>
+	 * @return the element occurrence at the specified position
+	 * @throws IndexOutOfBoundsException if the index is negative or not
+	 *         lower than the number of occurrences in this bag
+	 */
+	public E select(long index) {
+		long size = occurrences();
+
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Invalid index: " + index + ", size: " + size + ".");
+		}
+
+		return base.select(base.root, (descending ? highCount() - 1 - index : lowCount() + index)).element;
+	}
+
+	/**
+	 * Returns the number of element occurrences of this bag that precede
+	 * the specified element in its iteration order, which is the position
+	 * of the first occurrence of the element if it is contained in this
+	 * bag. This operation takes logarithmic time.
+	 *
+	 * @param  element the element whose rank is to be returned
+	 * @return the number of occurrences preceding the specified element
+	 * @throws ClassCastException if the specified element cannot be
+	 *         compared with the elements currently in this bag
+	 * @throws NullPointerException if the specified element is null
+	 */
+	public long rank(E element) {
+		requireNonNull(element, "Invalid null element.");
+
+		if (tooLow(element)) {
+			return (descending ? occurrences() : 0);
+		}
+
+		if (tooHigh(element)) {
+			return (descending ? 0 : occurrences());
+		}
+
+		return (descending ? highCount() - base.headCount(element, true) : base.headCount(element, false) - lowCount());
+	}
+
+	/**
+	 * Returns the number of element occurrences of this bag ranging from
+	 * <tt>fromElement</tt> to <tt>toElement</tt>, in its iteration order.
+	 * This is the size of the corresponding <tt>subBag</tt> view, computed
+	 * in logarithmic time.
+	 *
+	 * @param  fromElement low endpoint of the range
+	 * @param  fromInclusive <tt>true</tt> if the low endpoint
+	 *         is to be included in the range
+	 * @param  toElement high endpoint of the range
+	 * @param  toInclusive <tt>true</tt> if the high endpoint
+	 *         is to be included in the range
+	 * @return the number of occurrences within the range
+	 * @throws ClassCastException if the specified elements cannot be
+	 *         compared with the elements currently in this bag
+	 * @throws NullPointerException if any of the specified elements is null
+	 * @throws IllegalArgumentException if <tt>fromElement</tt> follows
+	 *         <tt>toElement</tt>, or if the range lies outside the range
+	 *         of this bag
+	 */
+	public long countInRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+		return subBag(fromElement, fromInclusive, toElement, toInclusive).occurrences();
+	}
+
+	/**
+	 * Returns the number of element occurrences of this bag ranging from
+	 * <tt>fromElement</tt>, inclusive, to <tt>toElement</tt>, exclusive.
+	 * This operation takes logarithmic time.
+	 *
+	 * @param  fromElement low endpoint (inclusive) of the range
+	 * @param  toElement high endpoint (exclusive) of the range
+	 * @return the number of occurrences within the range
+	 * @throws ClassCastException if the specified elements cannot be
+	 *         compared with the elements currently in this bag
+	 * @throws NullPointerException if any of the specified elements is null
+	 * @throws IllegalArgumentException if <tt>fromElement</tt> follows
+	 *         <tt>toElement</tt>, or if the range lies outside the range
+	 *         of this bag
+	 */
+	public long countInRange(E fromElement, E toElement) {
+		return countInRange(fromElement, true, toElement, false);
+	}
+
+	/**
+	 * Returns the given percentile of this bag, using the nearest-rank
+	 * method: the smallest element such that at least the given percentage
+	 * of the occurrences are lower than or equal to it, in the iteration
+	 * order of this bag. This operation takes logarithmic time.
+	 *
+	 * @param  percentile the percentile, from <tt>0</tt> to <tt>100</tt>
+	 * @return the element at the given percentile
+	 * @throws IllegalArgumentException if the percentile is
+	 *         not within <tt>0</tt> and <tt>100</tt>
+	 * @throws NoSuchElementException if this bag is empty
+	 */
+	public E percentile(double percentile) {
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("Invalid percentile: " + percentile + ".");
+		}
+
+		long size = occurrences();
+
+		if (size == 0) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		long index = (long)Math.ceil(percentile / 100 * size) - 1;
+		return select(Math.min(Math.max(index, 0), size - 1));
+	}
+
+	/**
+	 * Returns the median of this bag, that is its 50th percentile. If the
+	 * number of occurrences is even, this is the lower of the two middle
+	 * occurrences. This operation takes logarithmic time.
+	 *
+	 * @return the median element of this bag
+	 * @throws NoSuchElementException if this bag is empty
+	 * @see #percentile(double)
+	 */
+	public E median() {
+		return percentile(50);
+	}
+
+	//bag behaviour
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>For views, this method takes logarithmic time.</p>
+	 */
+	@Override
+	public int size() {
+		return (int)Math.min(occurrences(), Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return first(true) == null;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return count(object) > 0;
+	}
+
+	@Override
+	public int count(Object object) {
+		if (object == null || !inRange((E)object)) {
+			return 0;
+		}
+
+		Node<E> node = base.find(object);
+		return (node == null ? 0 : node.count);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new NodeIterator<E>() {
+			//mutable state
+			private E current;
+			private int countdown = 0;
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				return countdown > 0 || hasNextNode();
+			}
+
+			@Override
+			public E next() {
+				checkNext(hasNext());
+				checkModification(base.modification);
+				setRemovable(true);
+
+				if (countdown == 0) {
+					Node<E> node = nextNode();
+					current = node.element;
+					countdown = node.count;
+				}
+
+				countdown--;
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				checkRemovable();
+				checkModification(base.modification);
+				setRemovable(false);
+
+				//the remaining countdown is left untouched, it counts the occurrences still to be returned
+				OrderStatisticTreeBag.this.remove(current);
+
+				if (countdown == 0) {
+					//the node may have been removed and the tree rebalanced
+					seek(current);
+				}
+
+				setModification(base.modification);
+			}
+		};
+	}
+
+	/**
+	 * This field is initialized to contain an instance of the
+	 * view the first time this view is requested. The view
+	 * is stateless, so there's no reason to create more than one.
+	 */
+	private transient volatile Set<Entry<E>> entries;
+
+	@Override
+	public Set<Entry<E>> asEntrySet() {
+		if (entries == null) {
+			entries = new AbstractSet<Entry<E>>() {
+				@Override
+				public int size() {
+					if (fromStart && toEnd) {
+						return base.distinct;
+					}
+
+					int[] size = {0};
+					forEachEntry((element, count) -> size[0]++);
+					return size[0];
+				}
+
+				@Override
+				public boolean isEmpty() {
+					return OrderStatisticTreeBag.this.isEmpty();
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					return object instanceof Entry
+						&& ((Entry<?>)object).getCount() > 0
+						&& count(((Entry<?>)object).getElement()) == ((Entry<?>)object).getCount();
+				}
+
+				@Override
+				public boolean remove(Object object) {
+					if (contains(object)) {
+						delete(((Entry<?>)object).getElement());
+						return true;
+					}
+
+					return false;
+				}
+
+				@Override
+				public void clear() {
+					OrderStatisticTreeBag.this.clear();
+				}
+
+				@Override
+				public Iterator<Entry<E>> iterator() {
+					return new NodeIterator<Entry<E>>() {
+						//mutable state
+						private E current;
+
+						//iterator behaviour
+						@Override
+						public boolean hasNext() {
+							return hasNextNode();
+						}
+
+						@Override
+						public Entry<E> next() {
+							checkNext(hasNext());
+							checkModification(base.modification);
+							setRemovable(true);
+
+							Node<E> node = nextNode();
+							current = node.element;
+
+							return new Entry<E>() {
+								//entry behaviour
+								@Override
+								public E getElement() {
+									return node.element;
+								}
+
+								@Override
+								public int getCount() {
+									return node.count;
+								}
+
+								@Override
+								public int setCount(int count) {
+									if (count < 1) {
+										throw new IllegalArgumentException("Invalid count value for entry: " + toString() + ".");
+									}
+
+									//a contained element keeps its node, the tree is not rebalanced
+									int result = set(node.element, count);
+									setModification(base.modification);
+									return result;
+								}
+
+								//object behaviour
+								@Override
+								public int hashCode() {
+									return node.element.hashCode() ^ node.count;
+								}
+
+								@Override
+								public boolean equals(Object object) {
+									return object == this || (
+										object instanceof Entry
+										&& node.element.equals(((Entry<?>)object).getElement())
+										&& node.count == ((Entry<?>)object).getCount()
+									);
+								}
+
+								@Override
+								public String toString() {
+									return node.element + "=" + node.count;
+								}
+							};
+						}
+
+						@Override
+						public void remove() {
+							checkRemovable();
+							checkModification(base.modification);
+							setRemovable(false);
+
+							delete(current);
+							seek(current);
+							setModification(base.modification);
+						}
+					};
+				}
+			};
+		}
+
+		return entries;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation traverses the tree in order,
+	 * so no entry object is allocated.</p>
+	 *
+	 * @throws ConcurrentModificationException if it is
+	 *         detected that the action modified this bag
+	 */
+	@Override
+	public void forEachEntry(ObjIntConsumer<? super E> action) {
+		requireNonNull(action, "Invalid null action.");
+		int expected = base.modification;
+		forEachEntry(base.root, action, expected);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation selects the occurrence at a random position of
+	 * this bag, so it runs in logarithmic time without any index.</p>
+	 */
+	@Override
+	public E sample(Random random) {
+		requireNonNull(random, "Invalid null random.");
+		long size = occurrences();
+
+		if (size == 0) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		return select(Sampler.nextLong(random, size));
+	}
+
+	@Override
+	public int put(E element, int amount) {
+		check(element);
+
+		if (amount == 0) {
+			return count(element);
+		}
+
+		Node<E> node = base.find(element);
+
+		if (node == null) {
+			if (amount > 0) {
+				base.link(element, amount);
+			}
+
+			return 0;
+		}
+
+		int result = node.count;
+
+		if (amount > Integer.MAX_VALUE - result) {
+			throw new IllegalArgumentException("Invalid count overflow: " + result + " + " + amount + ".");
+		}
+
+		if (result + amount > 0) {
+			base.adjust(element, amount);
+		} else {
+			base.unlink(element);
+		}
+
+		return result;
+	}
+
+	@Override
+	public int set(E element, int count) {
+		check(element);
+
+		Node<E> node = base.find(element);
+
+		if (node == null) {
+			if (count > 0) {
+				base.link(element, count);
+			}
+
+			return 0;
+		}
+
+		int result = node.count;
+
+		if (count > 0) {
+			base.adjust(element, count - result);
+		} else {
+			base.unlink(element);
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		int count = count(object);
+
+		if (count == 0) {
+			return false;
+		}
+
+		if (count > 1) {
+			base.adjust((E)object, -1);
+		} else {
+			base.unlink(object);
+		}
+
+		return true;
+	}
+
+	@Override
+	public int delete(Object object) {
+		int count = count(object);
+
+		if (count > 0) {
+			base.unlink(object);
+		}
+
+		return count;
+	}
+
+	@Override
+	public void clear() {
+		if (fromStart && toEnd) {
+			base.root = null;
+			base.distinct = 0;
+			base.modification++;
+			return;
+		}
+
+		for (Node<E> node; (node = first(true)) != null;) {
+			base.unlink(node.element);
+		}
+	}
+
+	//sorted bag behaviour
+	@Override
+	public Comparator<? super E> comparator() {
+		return (descending ? Collections.reverseOrder(comparator) : comparator);
+	}
+
+	@Override
+	public SortedBag<E> subBag(E fromElement, E toElement) {
+		return subBag(fromElement, true, toElement, false);
+	}
+
+	@Override
+	public SortedBag<E> headBag(E toElement) {
+		return headBag(toElement, false);
+	}
+
+	@Override
+	public SortedBag<E> tailBag(E fromElement) {
+		return tailBag(fromElement, true);
+	}
+
+	@Override
+	public E first() {
+		return element(first(true), true);
+	}
+
+	@Override
+	public E last() {
+		return element(first(false), true);
+	}
+
+	//navigable bag behaviour
+	@Override
+	public E lower(E element) {
+		return element(descending ? higher(requireNonNull(element, "Invalid null element."), false) : lower(requireNonNull(element, "Invalid null element."), false), false);
+	}
+
+	@Override
+	public E floor(E element) {
+		return element(descending ? higher(requireNonNull(element, "Invalid null element."), true) : lower(requireNonNull(element, "Invalid null element."), true), false);
+	}
+
+	@Override
+	public E ceiling(E element) {
+		return element(descending ? lower(requireNonNull(element, "Invalid null element."), true) : higher(requireNonNull(element, "Invalid null element."), true), false);
+	}
+
+	@Override
+	public E higher(E element) {
+		return element(descending ? lower(requireNonNull(element, "Invalid null element."), false) : higher(requireNonNull(element, "Invalid null element."), false), false);
+	}
+
+	/**
+	 * Removes one occurrence of the first element of this bag
+	 * and returns it, or returns <tt>null</tt> if this bag is empty.
+	 *
+	 * @return the removed occurrence, or <tt>null</tt> if this bag is empty
+	 */
+	@Override
+	public E pollFirst() {
+		Node<E> node = first(true);
+
+		if (node == null) {
+			return null;
+		}
+
+		E element = node.element;
+		remove(element);
+		return element;
+	}
+
+	/**
+	 * Removes one occurrence of the last element of this bag
+	 * and returns it, or returns <tt>null</tt> if this bag is empty.
+	 *
+	 * @return the removed occurrence, or <tt>null</tt> if this bag is empty
+	 */
+	@Override
+	public E pollLast() {
+		Node<E> node = first(false);
+
+		if (node == null) {
+			return null;
+		}
+
+		E element = node.element;
+		remove(element);
+		return element;
+	}
+
+	@Override
+	public Iterator<E> descendingIterator() {
+		return descendingBag().iterator();
+	}
+
+	@Override
+	public NavigableBag<E> descendingBag() {
+		return new OrderStatisticTreeBag<>(base, fromStart, low, lowInclusive, toEnd, high, highInclusive, !descending);
+	}
+
+	@Override
+	public OrderStatisticTreeBag<E> subBag(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+		checkBound(fromElement, fromInclusive);
+		checkBound(toElement, toInclusive);
+
+		if (descending) {
+			return new OrderStatisticTreeBag<>(base, false, toElement, toInclusive, false, fromElement, fromInclusive, true);
+		}
+
+		return new OrderStatisticTreeBag<>(base, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+	}
+
+	@Override
+	public OrderStatisticTreeBag<E> headBag(E toElement, boolean inclusive) {
+		checkBound(toElement, inclusive);
+
+		if (descending) {
+			return new OrderStatisticTreeBag<>(base, false, toElement, inclusive, toEnd, high, highInclusive, true);
+		}
+
+		return new OrderStatisticTreeBag<>(base, fromStart, low, lowInclusive, false, toElement, inclusive, false);
+	}
+
+	@Override
+	public OrderStatisticTreeBag<E> tailBag(E fromElement, boolean inclusive) {
+		checkBound(fromElement, inclusive);
+
+		if (descending) {
+			return new OrderStatisticTreeBag<>(base, fromStart, low, lowInclusive, false, fromElement, inclusive, true);
+		}
+
+		return new OrderStatisticTreeBag<>(base, false, fromElement, inclusive, toEnd, high, highInclusive, false);
+	}
+
+	//cloneable behaviour
+	/**
+	 * Returns a shallow copy of this bag: the elements themselves are not
+	 * cloned. The copy of a view is a standalone bag holding the elements
+	 * within the range of the view, in the same order.
+	 *
+	 * @return a shallow copy of this bag
+	 */
+	@Override
+	public Object clone() {
+		try {
+			OrderStatisticTreeBag<E> clone = (OrderStatisticTreeBag<E>)super.clone();
+			clone.base = clone;
+			clone.root = null;
+			clone.distinct = 0;
+			clone.modification = 0;
+			clone.low = clone.high = null;
+			clone.fromStart = clone.toEnd = true;
+			clone.entries = null;
+			clone.elements = null;
+
+			if (fromStart && toEnd) {
+				clone.root = copy(base.root);
+				clone.distinct = base.distinct;
+			} else {
+				forEachEntry(clone::set);
+			}
+
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	//inherited
+
+	//serializable behaviour
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		output.defaultWriteObject();
+		output.writeInt(asEntrySet().size());
+
+		for (Entry<E> entry : asEntrySet()) {
+			output.writeObject(entry.getElement());
+			output.writeInt(entry.getCount());
+		}
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		base = this;
+		fromStart = toEnd = true;
+		int length = input.readInt();
+
+		if (length < 0) {
+			throw new InvalidObjectException("Invalid number of entries: " + length + ".");
+		}
+
+		for (int entry = 0; entry < length; entry++) {
+			put((E)input.readObject(), input.readInt());
+		}
+	}
+
+	//miscellaneous
+	@Override
+	boolean shares(Collection<?> collection) {
+		return collection instanceof OrderStatisticTreeBag && ((OrderStatisticTreeBag<?>)collection).base == base;
+	}
+
+	private int compare(Object left, Object right) {
+		return (comparator == null ? ((Comparable<? super E>)left).compareTo((E)right) : comparator.compare((E)left, (E)right));
+	}
+
+	private void check(E element) {
+		requireNonNull(element, "Invalid null element.");
+
+		if (!inRange(element)) {
+			throw new IllegalArgumentException("Invalid element out of range: " + element + ".");
+		}
+	}
+
+	private void checkBound(E element, boolean inclusive) {
+		requireNonNull(element, "Invalid null element.");
+
+		if (inclusive ? !inRange(element) : !inClosedRange(element)) {
+			throw new IllegalArgumentException("Invalid element out of range: " + element + ".");
+		}
+	}
+
+	private boolean tooLow(E element) {
+		if (!fromStart) {
+			int comparison = compare(element, low);
+			return comparison < 0 || (comparison == 0 && !lowInclusive);
+		}
+
+		return false;
+	}
+
+	private boolean tooHigh(E element) {
+		if (!toEnd) {
+			int comparison = compare(element, high);
+			return comparison > 0 || (comparison == 0 && !highInclusive);
+		}
+
+		return false;
+	}
+
+	private boolean inRange(E element) {
+		return !tooLow(element) && !tooHigh(element);
+	}
+
+	private boolean inClosedRange(E element) {
+		return (fromStart || compare(element, low) >= 0) && (toEnd || compare(high, element) >= 0);
+	}
+
+	/**
+	 * Returns the number of occurrences within the range of this bag.
+	 */
+	private long occurrences() {
+		return highCount() - lowCount();
+	}
+
+	/**
+	 * Returns the number of occurrences of the tree below the range of this bag.
+	 */
+	private long lowCount() {
+		return (fromStart ? 0 : base.headCount(low, !lowInclusive));
+	}
+
+	/**
+	 * Returns the number of occurrences of the tree up to the end of the range of this bag.
+	 */
+	private long highCount() {
+		return (toEnd ? total(base.root) : base.headCount(high, highInclusive));
+	}
+
+	private static <E> E element(Node<E> node, boolean required) {
+		if (node == null && required) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		return (node == null ? null : node.element);
+	}
+
+	/**
+	 * Returns the first node within the range of this bag in its iteration
+	 * order if <tt>forward</tt> is set, otherwise the last one.
+	 */
+	private Node<E> first(boolean forward) {
+		if (forward != descending) {
+			return bound(fromStart ? lowest(base.root) : base.ceiling(low, lowInclusive));
+		}
+
+		return bound(toEnd ? highest(base.root) : base.floor(high, highInclusive));
+	}
+
+	/**
+	 * Returns the lowest node within the range of this bag
+	 * whose element is higher than (or equal to) the given one.
+	 */
+	private Node<E> higher(E element, boolean inclusive) {
+		return (tooLow(element) ? first(!descending) : bound(base.ceiling(element, inclusive)));
+	}
+
+	/**
+	 * Returns the highest node within the range of this bag
+	 * whose element is lower than (or equal to) the given one.
+	 */
+	private Node<E> lower(E element, boolean inclusive) {
+		return (tooHigh(element) ? first(descending) : bound(base.floor(element, inclusive)));
+	}
+
+	/**
+	 * Returns the given node if it is within the range of this bag, or null.
+	 */
+	private Node<E> bound(Node<E> node) {
+		return (node == null || !inRange(node.element) ? null : node);
+	}
+
+	private void forEachEntry(Node<E> node, ObjIntConsumer<? super E> action, int expected) {
+		if (node == null) {
+			return;
+		}
+
+		//the lower subtree can only hold elements within the range if this node is not below it, and vice versa
+		boolean lower = !tooLow(node.element);
+		boolean upper = !tooHigh(node.element);
+
+		if (descending ? upper : lower) {
+			forEachEntry((descending ? node.right : node.left), action, expected);
+		}
+
+		if (lower && upper) {
+			action.accept(node.element, node.count);
+
+			if (base.modification != expected) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+		if (descending ? lower : upper) {
+			forEachEntry((descending ? node.left : node.right), action, expected);
+		}
+	}
+
+	//tree behaviour, only invoked on the holding bag
+	private Node<E> find(Object object) {
+		for (Node<E> node = root; node != null;) {
+			int comparison = compare(object, node.element);
+
+			if (comparison == 0) {
+				return node;
+			}
+
+			node = (comparison < 0 ? node.left : node.right);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the lowest node whose element is higher
+	 * than (or equal to) the given one.
+	 */
+	private Node<E> ceiling(E element, boolean inclusive) {
+		Node<E> result = null;
+
+		for (Node<E> node = root; node != null;) {
+			int comparison = compare(element, node.element);
+
+			if (comparison == 0 && inclusive) {
+				return node;
+			} else if (comparison < 0) {
+				result = node;
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the highest node whose element is lower
+	 * than (or equal to) the given one.
+	 */
+	private Node<E> floor(E element, boolean inclusive) {
+		Node<E> result = null;
+
+		for (Node<E> node = root; node != null;) {
+			int comparison = compare(element, node.element);
+
+			if (comparison == 0 && inclusive) {
+				return node;
+			} else if (comparison > 0) {
+				result = node;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the number of occurrences of the elements lower than
+	 * (or equal to) the given one, in ascending order.
+	 */
+	private long headCount(E element, boolean inclusive) {
+		long count = 0;
+
+		for (Node<E> node = root; node != null;) {
+			int comparison = compare(element, node.element);
+
+			if (comparison < 0) {
+				node = node.left;
+			} else if (comparison > 0) {
+				count += total(node.left) + node.count;
+				node = node.right;
+			} else {
+				return count + total(node.left) + (inclusive ? node.count : 0);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Returns the node holding the occurrence at the
+	 * specified position of the subtree, in ascending order.
+	 */
+	private Node<E> select(Node<E> node, long index) {
+		for (;;) {
+			long left = total(node.left);
+
+			if (index < left) {
+				node = node.left;
+			} else if (index < left + node.count) {
+				return node;
+			} else {
+				index -= left + node.count;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Adds the given amount to the count of a contained element, updating
+	 * the subtree counts along its path. The tree is not rebalanced.
+	 */
+	private void adjust(E element, int amount) {
+		for (Node<E> node = root; node != null;) {
+			node.total += amount;
+			int comparison = compare(element, node.element);
+
+			if (comparison == 0) {
+				node.count += amount;
+				break;
+			}
+
+			node = (comparison < 0 ? node.left : node.right);
+		}
+
+		modification++;
+	}
+
+	private void link(E element, int count) {
+		root = insert(root, element, count);
+		distinct++;
+		modification++;
+	}
+
+	private void unlink(Object element) {
+		root = remove(root, element);
+		distinct--;
+		modification++;
+	}
+
+	private Node<E> insert(Node<E> node, E element, int count) {
+		if (node == null) {
+			return new Node<>(element, count);
+		}
+
+		if (compare(element, node.element) < 0) {
+			node.left = insert(node.left, element, count);
+		} else {
+			node.right = insert(node.right, element, count);
+		}
+
+		return balance(node);
+	}
+
+	private Node<E> remove(Node<E> node, Object element) {
+		int comparison = compare(element, node.element);
+
+		if (comparison < 0) {
+			node.left = remove(node.left, element);
+		} else if (comparison > 0) {
+			node.right = remove(node.right, element);
+		} else if (node.left == null) {
+			return node.right;
+		} else if (node.right == null) {
+			return node.left;
+		} else {
+			//the successor takes the place of the removed node
+			Node<E> successor = lowest(node.right);
+			successor.right = removeLowest(node.right);
+			successor.left = node.left;
+			node = successor;
+		}
+
+		return balance(node);
+	}
+
+	private Node<E> removeLowest(Node<E> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+
+		node.left = removeLowest(node.left);
+		return balance(node);
+	}
+
+	private static <E> Node<E> lowest(Node<E> node) {
+		while (node != null && node.left != null) {
+			node = node.left;
+		}
+
+		return node;
+	}
+
+	private static <E> Node<E> highest(Node<E> node) {
+		while (node != null && node.right != null) {
+			node = node.right;
+		}
+
+		return node;
+	}
+
+	private static <E> Node<E> copy(Node<E> node) {
+		if (node == null) {
+			return null;
+		}
+
+		Node<E> copy = new Node<>(node.element, node.count);
+		copy.left = copy(node.left);
+		copy.right = copy(node.right);
+		copy.height = node.height;
+		copy.total = node.total;
+		return copy;
+	}
+
+	private static long total(Node<?> node) {
+		return (node == null ? 0 : node.total);
+	}
+
+	private static int height(Node<?> node) {
+		return (node == null ? 0 : node.height);
+	}
+
+	private static <E> Node<E> balance(Node<E> node) {
+		int factor = height(node.left) - height(node.right);
+
+		if (factor > 1) {
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left);
+			}
+
+			return rotateRight(node);
+		}
+
+		if (factor < -1) {
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right);
+			}
+
+			return rotateLeft(node);
+		}
+
+		node.update();
+		return node;
+	}
+
+	private static <E> Node<E> rotateLeft(Node<E> node) {
+		Node<E> right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.update();
+		right.update();
+		return right;
+	}
+
+	private static <E> Node<E> rotateRight(Node<E> node) {
+		Node<E> left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.update();
+		left.update();
+		return left;
+	}
+
+	/**
+	 * Tree node, holding the count of its element and the
+	 * number of occurrences and the height of its subtree.
+	 */
+	private static final class Node<E> {
+		//immutable state
+		private final E element;
+
+		//mutable state
+		private int count;
+		private long total;
+		private int height = 1;
+		private Node<E> left;
+		private Node<E> right;
+
+		//constructors
+		Node(E element, int count) {
+			this.element = element;
+			this.count = count;
+			this.total = count;
+		}
+
+		//node behaviour
+		void update() {
+			height = 1 + Math.max(height(left), height(right));
+			total = count + total(left) + total(right);
+		}
+	}
+
+	/**
+	 * Iterator over the nodes within the range of this bag, in its iteration
+	 * order. It keeps the path to the next node on a stack, which is rebuilt
+	 * by <tt>seek</tt> when the tree is rebalanced by a removal.
+	 */
+	private abstract class NodeIterator<T> extends AbstractIterator<T> {
+		//immutable state
+		private final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+
+		//initializer
+		{
+			setRemovable(false);
+			setModification(base.modification);
+			descend(base.root, null);
+		}
+
+		//miscellaneous
+		final boolean hasNextNode() {
+			if (!stack.isEmpty() && (descending ? tooLow(stack.peek().element) : tooHigh(stack.peek().element))) {
+				stack.clear();
+			}
+
+			return !stack.isEmpty();
+		}
+
+		final Node<E> nextNode() {
+			Node<E> node = stack.pop();
+			descend((descending ? node.left : node.right), null);
+			return node;
+		}
+
+		/**
+		 * Rebuilds the stack, so that the next node is the
+		 * first one that follows the given element.
+		 */
+		final void seek(E element) {
+			stack.clear();
+			descend(base.root, element);
+		}
+
+		/**
+		 * Pushes the path to the first node of the subtree that is within
+		 * the range of this bag and follows the given element, if any.
+		 */
+		private void descend(Node<E> node, E after) {
+			while (node != null) {
+				boolean skip = (descending
+					? tooHigh(node.element) || (after != null && compare(node.element, after) >= 0)
+					: tooLow(node.element) || (after != null && compare(node.element, after) <= 0));
+
+				if (skip) {
+					node = (descending ? node.left : node.right);
+				} else {
+					stack.push(node);
+					node = (descending ? node.right : node.left);
+				}
+			}
+		}
+	}
+}
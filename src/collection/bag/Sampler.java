@@ -0,0 +1,212 @@
+package collection.bag;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Index over a snapshot of the entries of a bag, which draws random element
+ * occurrences, each element with probability proportional to its count. The
+ * counts are kept in a Fenwick tree, so a draw runs in <tt>O(log n)</tt>
+ * time, where <tt>n</tt> is the number of distinct elements, and so does the
+ * removal of the drawn occurrence when drawing without replacement. The tree
+ * is built in linear time.
+ *
+ * <p>A sampler drawing with replacement is never modified, so a bag may keep
+ * it until the bag itself is modified. Drawing without replacement works on
+ * a copy of it.</p>
+ *
+ * @param <E> the type of the sampled elements
+ *
+ * @author Thiago Reis
+ * @see Bag#sample(Random)
+ * @see Bag#sample(Random, long, boolean)
+ * @since 1.0
+ */
+final class Sampler<E> implements ObjIntConsumer<E> {
+	//immutable state
+	/**
+	 * The modification count of the bag when this sampler was built, for
+	 * the bags which keep it until they are modified.
+	 */
+	final int modification;
+
+	//mutable state
+	private Object[] elements;
+
+	/**
+	 * The Fenwick tree, indexed from <tt>1</tt>, where the slot <tt>i</tt>
+	 * holds the sum of the counts of the <tt>i &amp; -i</tt> elements ending
+	 * at the element <tt>i - 1</tt>. It holds the plain counts until built.
+	 */
+	private long[] tree;
+	private int length = 0;
+	private long total = 0;
+
+	//constructors
+	Sampler(Bag<E> bag) {
+		this(bag, 0);
+	}
+
+	Sampler(Bag<E> bag, int modification) {
+		this.modification = modification;
+		int capacity = Math.max(bag.asEntrySet().size(), 1);
+		elements = new Object[capacity];
+		tree = new long[capacity + 1];
+		bag.forEachEntry(this);
+		build();
+	}
+
+	private Sampler(Sampler<E> sampler) {
+		modification = sampler.modification;
+		elements = sampler.elements;
+		tree = sampler.tree.clone();
+		length = sampler.length;
+		total = sampler.total;
+	}
+
+	//consumer behaviour
+	@Override
+	public void accept(E element, int count) {
+		if (length == elements.length) {
+			elements = Arrays.copyOf(elements, length * 2);
+			tree = Arrays.copyOf(tree, length * 2 + 1);
+		}
+
+		elements[length++] = element;
+		tree[length] = count;
+		total += count;
+	}
+
+	//sampler behaviour
+	/**
+	 * Draws an element occurrence, with replacement.
+	 */
+	E next(Random random) {
+		return (E)elements[find(random) - 1];
+	}
+
+	/**
+	 * Draws an element occurrence, without replacement.
+	 */
+	E take(Random random) {
+		int index = find(random);
+		total--;
+
+		for (int slot = index; slot <= length; slot += slot & -slot) {
+			tree[slot]--;
+		}
+
+		return (E)elements[index - 1];
+	}
+
+	/**
+	 * Returns a sequential stream of the specified number of occurrences
+	 * drawn from this sampler. The draws are taken lazily, and without
+	 * replacement they are taken from a copy of this sampler.
+	 */
+	Stream<E> stream(Random random, long size, boolean replacement) {
+		Objects.requireNonNull(random, "Invalid null random.");
+
+		if (size < 0) {
+			throw new IllegalArgumentException("Invalid negative sample size: " + size + ".");
+		}
+
+		if (size > 0 && total == 0) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		if (!replacement && size > total) {
+			throw new IllegalArgumentException("Invalid sample size greater than bag size: " + size + ".");
+		}
+
+		Sampler<E> source = (replacement ? this : new Sampler<>(this));
+
+		//the draws are taken one at a time, even when the stream is split, as the copy is not thread-safe
+		return StreamSupport.stream(new Spliterators.AbstractSpliterator<E>(size, Spliterator.SIZED) {
+			//mutable state
+			private long remaining = size;
+
+			//spliterator behaviour
+			@Override
+			public boolean tryAdvance(Consumer<? super E> action) {
+				Objects.requireNonNull(action, "Invalid null action.");
+
+				if (remaining == 0) {
+					return false;
+				}
+
+				remaining--;
+				action.accept(replacement ? source.next(random) : source.take(random));
+				return true;
+			}
+		}, false);
+	}
+
+	//miscellaneous
+	/**
+	 * Turns the plain counts into the Fenwick tree, adding each slot into
+	 * its parent.
+	 */
+	private void build() {
+		for (int slot = 1; slot <= length; slot++) {
+			int parent = slot + (slot & -slot);
+
+			if (parent <= length) {
+				tree[parent] += tree[slot];
+			}
+		}
+	}
+
+	/**
+	 * Returns the index, from <tt>1</tt>, of the element holding a random
+	 * occurrence, descending the tree from its largest power of two.
+	 */
+	private int find(Random random) {
+		Objects.requireNonNull(random, "Invalid null random.");
+
+		if (total == 0) {
+			throw new NoSuchElementException("Invalid empty bag.");
+		}
+
+		long target = nextLong(random, total);
+		int index = 0;
+
+		for (int step = Integer.highestOneBit(length); step > 0; step >>>= 1) {
+			if (index + step <= length && tree[index + step] <= target) {
+				index += step;
+				target -= tree[index];
+			}
+		}
+
+		return index + 1;
+	}
+
+	/**
+	 * Returns a uniformly distributed value between <tt>0</tt> (inclusive)
+	 * and the specified positive bound (exclusive), rejecting the values of
+	 * the last incomplete range of the generator.
+	 */
+	static long nextLong(Random random, long bound) {
+		if (bound <= Integer.MAX_VALUE) {
+			return random.nextInt((int)bound);
+		}
+
+		long bits;
+		long value;
+
+		do {
+			bits = random.nextLong() >>> 1;
+			value = bits % bound;
+		} while (bits - value + (bound - 1) < 0);
+
+		return value;
+	}
+}
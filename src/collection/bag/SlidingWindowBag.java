@@ -0,0 +1,443 @@
+package collection.bag;
+
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of the <tt>Bag</tt> interface which only counts the
+ * occurrences added within a sliding window, either of time, read from a
+ * {@link Clock}, or of the latest occurrences added. The window is divided
+ * into buckets of the given granularity, each one holding the occurrences
+ * added during its slice of the window, and a bucket expires as a whole once
+ * its slice falls out of the window, so the window is rounded up to a whole
+ * number of buckets, besides the current one, which is still being filled,
+ * and slides a bucket at a time. For example, to count
+ * the requests per key in the last minute, with a precision of a second:
+ *
+ * <pre> {@code
+ * SlidingWindowBag<String> requests = new SlidingWindowBag<>(Duration.ofMinutes(1), Duration.ofSeconds(1));
+ * }</pre>
+ *
+ * <p>Besides the buckets, this bag keeps the running sum of their counts, so
+ * {@link #count(Object)} and {@link #size()} run in constant time, and the
+ * expiry of a bucket, which every operation performs before anything else,
+ * runs in linear time in the number of its distinct elements, subtracting
+ * them from the sum. The buckets and the sum are {@link OpenHashBag}s.</p>
+ *
+ * <p>Occurrences can only be added, and only leave this bag by expiring, so
+ * the operations which remove or set counts throw an
+ * <tt>UnsupportedOperationException</tt>, except for <tt>clear</tt>, and the
+ * iterators and views of this bag are read-only. This implementation
+ * permits the <tt>null</tt> element. It is not synchronized, and its
+ * iterators are fail-fast, also when a bucket expires during the iteration,
+ * which any operation on this bag may cause. As reading this bag expires
+ * buckets too, reads modify it, so it must be wrapped by
+ * {@link Bags#synchronizedBag(Bag)} to be shared between threads, and not by
+ * {@link Bags#readWriteLockedBag(Bag)}, whose readers run concurrently.</p>
+ *
+ * @param <E> the type of elements maintained by this bag
+ *
+ * @author Thiago Reis
+ * @see Bag
+ * @see OpenHashBag
+ * @since 1.0
+ */
+public class SlidingWindowBag<E> extends AbstractBag<E> implements Bag<E>, Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+
+	//immutable state
+	/**
+	 * The clock of a window of time, or null for a window of occurrences.
+	 */
+	private final Clock clock;
+
+	/**
+	 * The span of each bucket, in milliseconds or in occurrences.
+	 */
+	private final long granularity;
+
+	/**
+	 * The number of buckets in the window.
+	 */
+	private final int length;
+
+	//mutable state
+	private OpenHashBag<E> aggregate;
+	private ArrayDeque<Bucket<E>> buckets;
+
+	/**
+	 * The number of occurrences added to a window of occurrences, which is
+	 * its clock.
+	 */
+	private long added = 0;
+
+	//constructors
+	/**
+	 * Constructs an empty bag counting the occurrences added within the
+	 * specified window of time, read from the system clock.
+	 *
+	 * @param window the span of time counted
+	 * @param granularity the span of time of each bucket
+	 * @throws NullPointerException if the window or the granularity is null
+	 * @throws IllegalArgumentException if the granularity is shorter than a
+	 *         millisecond or longer than the window, or if the window has too
+	 *         many buckets
+	 */
+	public SlidingWindowBag(Duration window, Duration granularity) {
+		this(window, granularity, Clock.systemUTC());
+	}
+
+	/**
+	 * Constructs an empty bag counting the occurrences added within the
+	 * specified window of time, read from the specified clock.
+	 *
+	 * @param window the span of time counted
+	 * @param granularity the span of time of each bucket
+	 * @param clock the clock telling the time of the occurrences
+	 * @throws NullPointerException if the window, the granularity or the
+	 *         clock is null
+	 * @throws IllegalArgumentException if the granularity is shorter than a
+	 *         millisecond or longer than the window, or if the window has too
+	 *         many buckets
+	 */
+	public SlidingWindowBag(Duration window, Duration granularity, Clock clock) {
+		this(
+			Objects.requireNonNull(window, "Invalid null window.").toMillis(),
+			Objects.requireNonNull(granularity, "Invalid null granularity.").toMillis(),
+			Objects.requireNonNull(clock, "Invalid null clock.")
+		);
+	}
+
+	/**
+	 * Constructs an empty bag counting the latest occurrences added, within
+	 * the specified window of occurrences.
+	 *
+	 * @param window the number of latest occurrences counted
+	 * @param granularity the number of occurrences of each bucket
+	 * @throws IllegalArgumentException if the granularity is not positive or
+	 *         is greater than the window, or if the window has too many
+	 *         buckets
+	 */
+	public SlidingWindowBag(long window, long granularity) {
+		this(window, granularity, null);
+	}
+
+	private SlidingWindowBag(long window, long granularity, Clock clock) {
+		if (granularity < 1 || granularity > window) {
+			throw new IllegalArgumentException("Invalid granularity: " + granularity + ".");
+		}
+
+		long length = (window + granularity - 1) / granularity;
+
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid number of buckets: " + length + ".");
+		}
+
+		this.clock = clock;
+		this.granularity = granularity;
+		this.length = (int)length;
+		this.aggregate = new OpenHashBag<>();
+		this.buckets = new ArrayDeque<>();
+	}
+
+	//bag behaviour
+	@Override
+	public int size() {
+		expire();
+		return aggregate.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		expire();
+		return aggregate.isEmpty();
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		expire();
+		return aggregate.contains(object);
+	}
+
+	/**
+	 * Returns the number of occurrences of the specified element added
+	 * within the window, in constant time besides the expiry of buckets.
+	 *
+	 * @param object the element whose count is to be returned
+	 * @return the count of the specified element within the window
+	 */
+	@Override
+	public int count(Object object) {
+		expire();
+		return aggregate.count(object);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		expire();
+
+		return new Iterator<E>() {
+			//immutable state
+			private final Iterator<E> iterator = aggregate.iterator();
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public E next() {
+				return iterator.next();
+			}
+		};
+	}
+
+	/**
+	 * This field is initialized to contain an instance of the
+	 * view the first time this view is requested. The view
+	 * is stateless, so there's no reason to create more than one.
+	 */
+	private transient volatile Set<Entry<E>> entries;
+
+	@Override
+	public Set<Entry<E>> asEntrySet() {
+		if (entries == null) {
+			entries = new AbstractSet<Entry<E>>() {
+				@Override
+				public int size() {
+					expire();
+					return aggregate.asEntrySet().size();
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					expire();
+					return aggregate.asEntrySet().contains(object);
+				}
+
+				@Override
+				public Iterator<Entry<E>> iterator() {
+					expire();
+
+					return new Iterator<Entry<E>>() {
+						//immutable state
+						private final Iterator<Entry<E>> iterator = aggregate.asEntrySet().iterator();
+
+						//iterator behaviour
+						@Override
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+
+						@Override
+						public Entry<E> next() {
+							return new SimpleImmutableEntry<>(iterator.next());
+						}
+					};
+				}
+			};
+		}
+
+		return entries;
+	}
+
+	@Override
+	public void forEachEntry(ObjIntConsumer<? super E> action) {
+		expire();
+		aggregate.forEachEntry(action);
+	}
+
+	@Override
+	public Stream<Entry<E>> entryStream() {
+		expire();
+		return aggregate.entryStream();
+	}
+
+	@Override
+	public IntStream counts() {
+		expire();
+		return aggregate.counts();
+	}
+
+	/**
+	 * Adds the specified number of occurrences of the specified element to
+	 * the latest bucket of this bag, and returns its count within the window
+	 * before they were added. In a window of occurrences, each one of them is
+	 * added to the bucket of its position, so only the latest ones are kept
+	 * if they outnumber the window.
+	 *
+	 * @param element the element whose occurrences are to be added
+	 * @param amount the number of occurrences to be added
+	 * @return the count of the element within the window before the call
+	 * @throws IllegalArgumentException if the specified amount is negative
+	 */
+	@Override
+	public int put(E element, int amount) {
+		if (amount < 0) {
+			throw new IllegalArgumentException("Invalid negative amount: " + amount + ".");
+		}
+
+		long epoch = expire();
+
+		if (amount == 0) {
+			return aggregate.count(element);
+		}
+
+		int result = aggregate.count(element);
+
+		//the running sum bounds the count of every bucket, so no bucket overflows unless it does
+		if (amount > Integer.MAX_VALUE - result) {
+			throw new IllegalArgumentException("Invalid count overflow: " + result + " + " + amount + ".");
+		}
+
+		if (clock != null) {
+			add(epoch, element, amount);
+			return result;
+		}
+
+		//the occurrences are split among the buckets of their positions, skipping those already out of the window
+		long first = added;
+		long last = added + amount - 1;
+		added += amount;
+
+		for (long current = Math.max(first / granularity, added / granularity - length); current <= last / granularity; current++) {
+			long start = Math.max(first, current * granularity);
+			long end = Math.min(last, current * granularity + granularity - 1);
+			add(current, element, (int)(end - start + 1));
+		}
+
+		expire();
+		return result;
+	}
+
+	/**
+	 * This bag does not support setting counts.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public int set(E element, int count) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * This bag does not support removing occurrences.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public boolean remove(Object object) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * This bag does not support removing occurrences.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public int delete(Object object) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		aggregate.clear();
+		buckets.clear();
+	}
+
+	//sliding window bag behaviour
+	/**
+	 * Removes the occurrences of the buckets which fell out of the window,
+	 * subtracting each bucket from the running sum in linear time in the
+	 * number of its distinct elements. Every operation on this bag does it
+	 * first, this method lets the memory of an idle window be released.
+	 *
+	 * @return the current bucket number, which is the time or the number of
+	 *         occurrences added divided by the granularity
+	 */
+	public long expire() {
+		long epoch = Math.floorDiv(clock == null ? added : clock.millis(), granularity);
+
+		for (Bucket<E> bucket = buckets.peekFirst(); bucket != null && bucket.epoch < epoch - length; bucket = buckets.peekFirst()) {
+			buckets.removeFirst();
+			bucket.counts.forEachEntry((element, count) -> aggregate.put(element, -count));
+		}
+
+		return epoch;
+	}
+
+	//cloneable behaviour
+	@Override
+	public Object clone() {
+		try {
+			SlidingWindowBag<E> clone = (SlidingWindowBag<E>)super.clone();
+			clone.aggregate = (OpenHashBag<E>)aggregate.clone();
+			clone.buckets = new ArrayDeque<>(buckets.size());
+
+			for (Bucket<E> bucket : buckets) {
+				Bucket<E> copy = new Bucket<>(bucket.epoch);
+				copy.counts = (OpenHashBag<E>)bucket.counts.clone();
+				clone.buckets.addLast(copy);
+			}
+
+			clone.entries = null;
+			clone.elements = null;
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	//inherited
+
+	//miscellaneous
+	/**
+	 * Adds the specified number of occurrences of the specified element to
+	 * the bucket of the specified number, or to the latest bucket if it is
+	 * newer, and to the running sum.
+	 */
+	private void add(long epoch, E element, int amount) {
+		Bucket<E> bucket = buckets.peekLast();
+
+		//a clock going backwards keeps adding to the latest bucket
+		if (bucket == null || bucket.epoch < epoch) {
+			bucket = new Bucket<>(epoch);
+			buckets.addLast(bucket);
+		}
+
+		bucket.counts.put(element, amount);
+		aggregate.put(element, amount);
+	}
+
+	/**
+	 * Occurrences added during a slice of the window.
+	 */
+	private static final class Bucket<E> implements Serializable {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		private final long epoch;
+
+		//mutable state
+		private OpenHashBag<E> counts = new OpenHashBag<>();
+
+		//constructors
+		Bucket(long epoch) {
+			this.epoch = epoch;
+		}
+	}
+}
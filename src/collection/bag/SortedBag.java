@@ -15,6 +15,8 @@ public interface SortedBag<E> extends Bag<E> {
 
 	@Override
 	default Spliterator<E> spliterator() {
-		return new SpliteratorWrapper(Spliterators.spliterator(SortedBag.this, Spliterator.SORTED | Spliterator.ORDERED), SortedBag.this.comparator());
+		Spliterator<E> spliterator = Spliterators.spliterator(SortedBag.this, Spliterator.SORTED | Spliterator.ORDERED);
+		//natural ordering is already reported by a null comparator
+		return (comparator() == null ? spliterator : new SpliteratorWrapper<>(spliterator, comparator()));
 	}
 }
@@ -0,0 +1,439 @@
+package collection.bag;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Capacity-bounded implementation of the <tt>Bag</tt> interface, which keeps
+ * the most frequent elements of a stream by the Space-Saving algorithm. At
+ * most <tt>capacity</tt> elements are monitored: an element added while the
+ * bag is full replaces the element with the lowest count, and takes over
+ * its count, which is recorded as the overestimate of the new element.
+ * The elements are kept in a {@link FrequencyBag}, so adding an occurrence
+ * runs in constant time, as does finding the element to be replaced.
+ *
+ * <p>The count of a monitored element is an upper bound of its real count,
+ * and {@link #guaranteedCount(Object)} is a lower bound, they differ by its
+ * {@link #overestimate(Object)}, which is at most <tt>size() / capacity</tt>.
+ * Every element whose real count exceeds <tt>size() / capacity</tt> is
+ * monitored. The size of this bag is the number of occurrences added, as
+ * the count taken over by a new element is not lost, until it is combined
+ * with another bag.</p>
+ *
+ * <p>Occurrences can only be added, so the operations which remove or set
+ * counts throw an <tt>UnsupportedOperationException</tt>, except for
+ * <tt>clear</tt>, and the iterators and views of this bag are read-only.
+ * Bags with the same capacity, counting different parts of a stream, are
+ * combined by {@link #union(SpaceSavingBag)}.</p>
+ *
+ * <p>This implementation permits the <tt>null</tt> element. It is not
+ * synchronized, and its iterators are fail-fast as those of
+ * <tt>FrequencyBag</tt>.</p>
+ *
+ * @param <E> the type of elements maintained by this bag
+ *
+ * @author Thiago Reis
+ * @see Bag
+ * @see FrequencyBag
+ * @see CountMinSketch
+ * @since 1.0
+ */
+public class SpaceSavingBag<E> extends AbstractBag<E> implements Bag<E>, Serializable, Cloneable {
+	//static state
+	private static final long serialVersionUID = -1L;
+
+	//immutable state
+	private final int capacity;
+
+	//mutable state
+	private FrequencyBag<E> counters;
+
+	/**
+	 * The overestimates of the monitored elements, only for those which
+	 * replaced another element.
+	 */
+	private HashMap<E, Integer> errors;
+
+	//constructors
+	public SpaceSavingBag(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity + ".");
+		}
+
+		this.capacity = capacity;
+		this.counters = new FrequencyBag<>(capacity);
+		this.errors = new HashMap<>();
+	}
+
+	public SpaceSavingBag(int capacity, Collection<? extends E> collection) {
+		this(capacity);
+		addAll(Objects.requireNonNull(collection, "Invalid null collection."));
+	}
+
+	//bag behaviour
+	@Override
+	public int size() {
+		return counters.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return counters.isEmpty();
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return counters.contains(object);
+	}
+
+	/**
+	 * Returns the estimated number of occurrences of the specified element,
+	 * which is an upper bound of its real count if it is monitored by this
+	 * bag, or <tt>zero</tt> otherwise.
+	 *
+	 * @param object the element whose count is to be estimated
+	 * @return the estimated count of the specified element
+	 */
+	@Override
+	public int count(Object object) {
+		return counters.count(object);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			//immutable state
+			private final Iterator<E> iterator = counters.iterator();
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public E next() {
+				return iterator.next();
+			}
+		};
+	}
+
+	/**
+	 * This field is initialized to contain an instance of the
+	 * view the first time this view is requested. The view
+	 * is stateless, so there's no reason to create more than one.
+	 */
+	private transient volatile Set<Entry<E>> entries;
+
+	@Override
+	public Set<Entry<E>> asEntrySet() {
+		if (entries == null) {
+			entries = new AbstractSet<Entry<E>>() {
+				@Override
+				public int size() {
+					return counters.asEntrySet().size();
+				}
+
+				@Override
+				public boolean contains(Object object) {
+					return counters.asEntrySet().contains(object);
+				}
+
+				@Override
+				public Iterator<Entry<E>> iterator() {
+					return new Iterator<Entry<E>>() {
+						//immutable state
+						private final Iterator<Entry<E>> iterator = counters.asEntrySet().iterator();
+
+						//iterator behaviour
+						@Override
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+
+						@Override
+						public Entry<E> next() {
+							return new SimpleImmutableEntry<>(iterator.next());
+						}
+					};
+				}
+			};
+		}
+
+		return entries;
+	}
+
+	@Override
+	public void forEachEntry(ObjIntConsumer<? super E> action) {
+		counters.forEachEntry(action);
+	}
+
+	@Override
+	public Stream<Entry<E>> entryStream() {
+		return counters.entryStream().map(SimpleImmutableEntry::new);
+	}
+
+	@Override
+	public IntStream counts() {
+		return counters.counts();
+	}
+
+	/**
+	 * Adds the specified number of occurrences of the specified element to
+	 * this bag. If the element is not monitored and this bag is full, it
+	 * replaces the element with the lowest count, whose count it takes over
+	 * as its overestimate.
+	 *
+	 * @param element the element whose occurrences are to be added
+	 * @param amount the number of occurrences to be added
+	 * @return the estimated count of the element before the occurrences
+	 *         were added, <tt>zero</tt> if it was not monitored
+	 * @throws IllegalArgumentException if the specified amount is negative
+	 */
+	@Override
+	public int put(E element, int amount) {
+		if (amount < 0) {
+			throw new IllegalArgumentException("Invalid negative amount: " + amount + ".");
+		}
+
+		if (amount == 0 || counters.contains(element) || counters.asEntrySet().size() < capacity) {
+			return counters.put(element, amount);
+		}
+
+		E victim = counters.leastFrequent();
+		int count = counters.count(victim);
+		int total = sum(count, amount);
+		errors.remove(victim);
+		counters.delete(victim);
+		counters.put(element, total);
+		errors.put(element, count);
+		return 0;
+	}
+
+	/**
+	 * This bag does not support setting counts.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public int set(E element, int count) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * This bag does not support removing occurrences.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public boolean remove(Object object) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * This bag does not support removing occurrences.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public int delete(Object object) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		counters.clear();
+		errors.clear();
+	}
+
+	//space saving bag behaviour
+	/**
+	 * Returns the maximum number of elements monitored by this bag.
+	 *
+	 * @return the capacity of this bag
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of occurrences of the specified element which are
+	 * guaranteed to have been added to this bag, a lower bound of its real
+	 * count, or <tt>zero</tt> if it is not monitored.
+	 *
+	 * @param object the element whose guaranteed count is to be returned
+	 * @return the guaranteed count of the specified element
+	 */
+	public int guaranteedCount(Object object) {
+		return count(object) - overestimate(object);
+	}
+
+	/**
+	 * Returns the maximum number of occurrences by which the count of the
+	 * specified element may exceed its real count, or <tt>zero</tt> if it
+	 * is not monitored.
+	 *
+	 * @param object the element whose overestimate is to be returned
+	 * @return the overestimate of the count of the specified element
+	 */
+	public int overestimate(Object object) {
+		Integer error = errors.get(object);
+		return (error == null ? 0 : error);
+	}
+
+	/**
+	 * Returns an iterator over the monitored elements and their estimated
+	 * counts, in ascending or descending order of count, as the
+	 * {@link FrequencyBag#countIterator(boolean) countIterator} of
+	 * <tt>FrequencyBag</tt> does, except that it is read-only.
+	 *
+	 * @param ascending <tt>true</tt> to start from the lowest count,
+	 *        <tt>false</tt> to start from the highest
+	 * @return an iterator over the entries of this bag in order of count
+	 */
+	public Iterator<Entry<E>> countIterator(boolean ascending) {
+		return new Iterator<Entry<E>>() {
+			//immutable state
+			private final Iterator<Entry<E>> iterator = counters.countIterator(ascending);
+
+			//iterator behaviour
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Entry<E> next() {
+				return iterator.next();
+			}
+		};
+	}
+
+	/**
+	 * Adds the occurrences counted by the specified bag to this bag, so
+	 * that this bag summarizes both streams, and keeps the elements with the
+	 * highest resulting counts. An element monitored by one bag only is
+	 * assumed to have the lowest count of the other bag, if that bag is
+	 * full, which is added to its count and to its overestimate, so the
+	 * bounds of both bags are kept. The specified bag is left unmodified.
+	 *
+	 * <p>This method runs in <tt>O(c log c)</tt> time, where <tt>c</tt> is
+	 * the capacity of the bags.</p>
+	 *
+	 * @param bag the bag whose occurrences are to be added
+	 * @return this bag
+	 * @throws NullPointerException if the specified bag is null
+	 * @throws IllegalArgumentException if the capacity of the specified bag
+	 *         differs from the capacity of this bag
+	 */
+	public SpaceSavingBag<E> union(SpaceSavingBag<? extends E> bag) {
+		Objects.requireNonNull(bag, "Invalid null bag.");
+
+		if (bag.capacity != capacity) {
+			throw new IllegalArgumentException("Invalid bag capacity: " + bag.capacity + ".");
+		}
+
+		int minimum = minimum();
+		int other = bag.minimum();
+		List<Monitor<E>> monitors = new ArrayList<>();
+
+		counters.forEachEntry((element, count) -> {
+			boolean shared = bag.counters.contains(element);
+			monitors.add(new Monitor<>(element,
+				sum(count, shared ? bag.count(element) : other),
+				overestimate(element) + (shared ? bag.overestimate(element) : other)
+			));
+		});
+
+		bag.counters.forEachEntry((element, count) -> {
+			if (!counters.contains(element)) {
+				monitors.add(new Monitor<>(element, sum(count, minimum), bag.overestimate(element) + minimum));
+			}
+		});
+
+		//the highest counts are kept, and inserted in ascending order, each one in the highest bucket
+		monitors.sort((monitor, another) -> Integer.compare(another.count, monitor.count));
+		List<Monitor<E>> kept = monitors.subList(0, Math.min(capacity, monitors.size()));
+		counters.clear();
+		errors.clear();
+
+		for (int index = kept.size() - 1; index >= 0; index--) {
+			Monitor<E> monitor = kept.get(index);
+			counters.put(monitor.element, monitor.count);
+
+			if (monitor.error > 0) {
+				errors.put(monitor.element, monitor.error);
+			}
+		}
+
+		return this;
+	}
+
+	//cloneable behaviour
+	@Override
+	public Object clone() {
+		try {
+			SpaceSavingBag<E> clone = (SpaceSavingBag<E>)super.clone();
+			clone.counters = (FrequencyBag<E>)counters.clone();
+			clone.errors = (HashMap<E, Integer>)errors.clone();
+			clone.entries = null;
+			clone.elements = null;
+			return clone;
+		} catch (CloneNotSupportedException exception) {
+			throw new InternalError(exception);
+		}
+	}
+
+	//object behaviour
+	//inherited
+
+	//miscellaneous
+	/**
+	 * Returns the sum of the specified counts, rejecting it if it overflows.
+	 * The overestimates never exceed their counts, so their sums are not
+	 * checked.
+	 */
+	private static int sum(int count, int amount) {
+		if (amount > Integer.MAX_VALUE - count) {
+			throw new IllegalArgumentException("Invalid count overflow: " + count + " + " + amount + ".");
+		}
+
+		return count + amount;
+	}
+
+	/**
+	 * Returns the lowest count of this bag if it is full, which bounds the
+	 * count of any element it does not monitor, or <tt>zero</tt> otherwise.
+	 */
+	private int minimum() {
+		return (counters.asEntrySet().size() < capacity ? 0 : counters.count(counters.leastFrequent()));
+	}
+
+	/**
+	 * Element of the bags being merged, with its merged count and
+	 * overestimate.
+	 */
+	private static final class Monitor<E> {
+		//immutable state
+		private final E element;
+		private final int count;
+		private final int error;
+
+		//constructors
+		Monitor(E element, int count, int error) {
+			this.element = element;
+			this.count = count;
+			this.error = error;
+		}
+	}
+}
@@ -3,13 +3,26 @@
 package collection.bag;
 
 import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class TreeBag<E> extends AbstractMapBag<E> implements NavigableBag<E>, Serializable, Cloneable {
 	//static state
@@ -20,6 +33,12 @@ public class TreeBag<E> extends AbstractMapBag<E> implements NavigableBag<E>, Se
 		this.map = map;
 	}
 
+	private TreeBag(SortedRuns<E> runs) {
+		//TreeMap builds its tree in linear time from a sorted map, taking its comparator
+		this.map = new TreeMap<>(runs);
+		this.size = runs.occurrences;
+	}
+
 	public TreeBag() {
 		map = new TreeMap<>();
 	}
@@ -32,8 +51,11 @@ public class TreeBag<E> extends AbstractMapBag<E> implements NavigableBag<E>, Se
 		Objects.requireNonNull(collection, "Invalid null collection.");
 
 		if (collection instanceof AbstractMapBag) {
-			size = ((AbstractMapBag)collection).size;
+			size = ((AbstractMapBag)collection).occurrences();
 			map = new TreeMap<>(((AbstractMapBag)collection).map);
+			detach();
+		} else if (collection instanceof SortedBag && ((SortedBag)collection).comparator() == null) {
+			load((SortedBag<E>)collection);
 		} else {
 			map = new TreeMap<>();
 			addAll(collection);
@@ -51,46 +73,166 @@ public class TreeBag<E> extends AbstractMapBag<E> implements NavigableBag<E>, Se
 		}
 	}
 
+	/**
+	 * Constructs a new tree bag containing the same elements and using the
+	 * same ordering as the specified sorted bag. This constructor runs in
+	 * linear time in the number of distinct elements of the bag.
+	 *
+	 * @param bag the sorted bag whose elements are to be placed into this
+	 * bag
+	 * @throws NullPointerException if the specified bag is null
+	 */
 	public TreeBag(SortedBag<E> bag) {
 		Objects.requireNonNull(bag, "Invalid null bag.");
 
-		//TreeMap nao possui um construtor com comparator + map juntos
-		if (bag.comparator() != null) {
-			map = new TreeMap<>(bag.comparator());
-			addAll(bag);
-		} else if (bag instanceof AbstractMapBag) {
-			size = ((AbstractMapBag)bag).size;
-			map = new TreeMap<>(((AbstractMapBag)bag).map);
-		} else {
-			map = new TreeMap<>();
-			addAll(bag);
-		}
+		load(bag);
+	}
+
+	//static factories
+	/**
+	 * Returns a new tree bag, using the natural ordering of its elements,
+	 * containing the elements of the specified array, which must be sorted
+	 * in ascending natural order. Equal neighbours are counted as occurrences
+	 * of the same element, and the tree is built in linear time in the
+	 * length of the array.
+	 *
+	 * @param <E> the type of the elements
+	 * @param elements the sorted array whose elements are to be placed into
+	 * the bag
+	 * @return a new tree bag containing the specified elements
+	 * @throws NullPointerException if the specified array or any of its
+	 * elements is null
+	 * @throws ClassCastException if the elements are not mutually comparable
+	 * @throws IllegalArgumentException if the array is not sorted
+	 */
+	public static <E> TreeBag<E> fromSorted(E[] elements) {
+		Objects.requireNonNull(elements, "Invalid null elements.");
+
+		return load(Arrays.stream(elements), null);
+	}
+
+	/**
+	 * Returns a new tree bag, using the specified comparator, containing the
+	 * elements of the specified array, which must be sorted in ascending
+	 * order according to that comparator. Equal neighbours are counted as
+	 * occurrences of the same element, and the tree is built in linear time
+	 * in the length of the array.
+	 *
+	 * @param <E> the type of the elements
+	 * @param elements the sorted array whose elements are to be placed into
+	 * the bag
+	 * @param comparator the comparator that will be used to order the bag
+	 * @return a new tree bag containing the specified elements
+	 * @throws NullPointerException if the specified array or comparator is
+	 * null
+	 * @throws IllegalArgumentException if the array is not sorted
+	 */
+	public static <E> TreeBag<E> fromSorted(E[] elements, Comparator<? super E> comparator) {
+		Objects.requireNonNull(elements, "Invalid null elements.");
+		Objects.requireNonNull(comparator, "Invalid null comparator.");
+
+		return load(Arrays.stream(elements), comparator);
+	}
+
+	/**
+	 * Returns a new tree bag, using the natural ordering of its elements,
+	 * containing the elements of the specified stream, which must be sorted
+	 * in ascending natural order. Equal neighbours are counted as occurrences
+	 * of the same element, and the tree is built in linear time in the
+	 * number of elements, once the stream has been consumed.
+	 *
+	 * @param <E> the type of the elements
+	 * @param elements the sorted stream whose elements are to be placed into
+	 * the bag
+	 * @return a new tree bag containing the specified elements
+	 * @throws NullPointerException if the specified stream or any of its
+	 * elements is null
+	 * @throws ClassCastException if the elements are not mutually comparable
+	 * @throws IllegalArgumentException if the stream is not sorted
+	 */
+	public static <E> TreeBag<E> fromSorted(Stream<? extends E> elements) {
+		Objects.requireNonNull(elements, "Invalid null elements.");
+
+		return load(elements, null);
+	}
+
+	/**
+	 * Returns a new tree bag, using the specified comparator, containing the
+	 * elements of the specified stream, which must be sorted in ascending
+	 * order according to that comparator. Equal neighbours are counted as
+	 * occurrences of the same element, and the tree is built in linear time
+	 * in the number of elements, once the stream has been consumed.
+	 *
+	 * @param <E> the type of the elements
+	 * @param elements the sorted stream whose elements are to be placed into
+	 * the bag
+	 * @param comparator the comparator that will be used to order the bag
+	 * @return a new tree bag containing the specified elements
+	 * @throws NullPointerException if the specified stream or comparator is
+	 * null
+	 * @throws IllegalArgumentException if the stream is not sorted
+	 */
+	public static <E> TreeBag<E> fromSorted(Stream<? extends E> elements, Comparator<? super E> comparator) {
+		Objects.requireNonNull(elements, "Invalid null elements.");
+		Objects.requireNonNull(comparator, "Invalid null comparator.");
+
+		return load(elements, comparator);
 	}
 
 	@Override
 	public Iterator<E> descendingIterator() {
-		return ((TreeMap<E, Counter>)map).descendingKeySet().descendingIterator();
+		return descendingBag().iterator();
 	}
 
 	//navigable bag behaviour
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The returned bag is a live view backed by this bag, which shares
+	 * its counters and fail-fast behaviour.</p>
+	 */
 	@Override
 	public NavigableBag<E> descendingBag() {
-		return new TreeBag<>(((TreeMap<E, Counter>)map).descendingMap());
+		return new View<>(root(), navigable().descendingMap());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The returned bag is a live view backed by this bag, which shares
+	 * its counters and fail-fast behaviour. Its size is cached, so it is
+	 * updated in constant time by the changes made through the view, and
+	 * recounted in linear time in the number of distinct elements within
+	 * the range after the changes made through any other view or through
+	 * this bag.</p>
+	 */
 	@Override
 	public NavigableBag<E> subBag(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
-		return new TreeBag<>(((TreeMap<E, Counter>)map).subMap(fromElement, fromInclusive, toElement, toInclusive));
+		return new View<>(root(), navigable().subMap(fromElement, fromInclusive, toElement, toInclusive));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The returned bag is a live view backed by this bag, with the same
+	 * behaviour of the views returned by
+	 * {@link #subBag(Object, boolean, Object, boolean)}.</p>
+	 */
 	@Override
 	public NavigableBag<E> headBag(E toElement, boolean inclusive) {
-		return new TreeBag<>(((TreeMap<E, Counter>)map).headMap(toElement, inclusive));
+		return new View<>(root(), navigable().headMap(toElement, inclusive));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The returned bag is a live view backed by this bag, with the same
+	 * behaviour of the views returned by
+	 * {@link #subBag(Object, boolean, Object, boolean)}.</p>
+	 */
 	@Override
 	public NavigableBag<E> tailBag(E fromElement, boolean inclusive) {
-		return new TreeBag<>(((TreeMap<E, Counter>)map).tailMap(fromElement, inclusive));
+		return new View<>(root(), navigable().tailMap(fromElement, inclusive));
 	}
 
 	@Override
@@ -110,49 +252,73 @@ public class TreeBag<E> extends AbstractMapBag<E> implements NavigableBag<E>, Se
 
 	@Override
 	public Comparator<? super E> comparator() {
-		return ((TreeMap<E, Counter>)map).comparator();
+		return navigable().comparator();
 	}
 
 	@Override
 	public E first() {
-		return ((TreeMap<E, Counter>)map).firstKey();
+		return navigable().firstKey();
 	}
 
 	@Override
 	public E last() {
-		return ((TreeMap<E, Counter>)map).lastKey();
+		return navigable().lastKey();
 	}
 
 	@Override
 	public E lower(E element) {
-		return ((TreeMap<E, Counter>)map).lowerKey(element);
+		return navigable().lowerKey(element);
 	}
 
 	@Override
 	public E floor(E element) {
-		return ((TreeMap<E, Counter>)map).floorKey(element);
+		return navigable().floorKey(element);
 	}
 
 	@Override
 	public E ceiling(E element) {
-		return ((TreeMap<E, Counter>)map).ceilingKey(element);
+		return navigable().ceilingKey(element);
 	}
 
 	@Override
 	public E higher(E element) {
-		return ((TreeMap<E, Counter>)map).higherKey(element);
+		return navigable().higherKey(element);
 	}
 
 	@Override
 	public E pollFirst() {
-		Map.Entry<E, Counter> element = ((TreeMap<E, Counter>)map).pollFirstEntry();
-		return (element == null) ? null : element.getKey();
+		Map.Entry<E, Counter> entry = navigable().firstEntry();
+		return (entry == null) ? null : poll(entry.getKey());
 	}
 
 	@Override
 	public E pollLast() {
-		Map.Entry<E, Counter> element = ((TreeMap<E, Counter>)map).pollLastEntry();
-		return (element == null) ? null : element.getKey();
+		Map.Entry<E, Counter> entry = navigable().lastEntry();
+		return (entry == null) ? null : poll(entry.getKey());
+	}
+
+	//iterable behaviour
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>This implementation returns a late-binding and fail-fast
+	 * spliterator which splits on the backing tree, without copying it, and
+	 * reports {@link Spliterator#SORTED}, {@link Spliterator#ORDERED} and the
+	 * comparator of this bag. The top-level spliterator also reports
+	 * {@link Spliterator#SIZED}, its splits are estimated from the average
+	 * count of the elements, as the tree splits by structure rather than by
+	 * occurrences. Range and descending views return the spliterator of
+	 * <tt>AbstractMapBag</tt>, as their backing maps do not split.</p>
+	 *
+	 * @return a spliterator over the element occurrences in this bag
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		if (map instanceof TreeMap) {
+			return new TreeSpliterator(map.entrySet().spliterator());
+		}
+
+		return super.spliterator();
 	}
 
 	//cloneable behaviour
@@ -161,6 +327,9 @@ public class TreeBag<E> extends AbstractMapBag<E> implements NavigableBag<E>, Se
 		try {
 			TreeBag<E> clone = (TreeBag<E>)super.clone();
 			clone.map = new TreeMap<>(map);
+			clone.detach();
+			clone.entries = null;
+			clone.elements = null;
 			return clone;
 		} catch (CloneNotSupportedException exception) {
 			throw new InternalError(exception);
@@ -169,4 +338,436 @@ public class TreeBag<E> extends AbstractMapBag<E> implements NavigableBag<E>, Se
 
 	//object behaviour
 	//inherited
+
+	//miscellaneous
+	/**
+	 * Builds a tree bag from the specified sorted stream, ordered by the
+	 * specified comparator, or by the natural ordering if it is null.
+	 */
+	private static <E> TreeBag<E> load(Stream<? extends E> elements, Comparator<? super E> comparator) {
+		SortedRuns<E> runs = new SortedRuns<>(comparator);
+		elements.forEachOrdered(element -> runs.append(element, 1));
+		return new TreeBag<>(runs);
+	}
+
+	/**
+	 * Fills this bag, in linear time, with the elements of the specified
+	 * sorted bag, taking its ordering.
+	 */
+	private void load(SortedBag<E> bag) {
+		if (bag instanceof AbstractMapBag && ((AbstractMapBag<E>)bag).map instanceof SortedMap) {
+			size = ((AbstractMapBag<E>)bag).occurrences();
+			map = new TreeMap<>((SortedMap<E, Counter>)((AbstractMapBag<E>)bag).map);
+			detach();
+		} else {
+			SortedRuns<E> runs = new SortedRuns<>(bag.comparator());
+			bag.forEachEntry(runs::append);
+			size = runs.occurrences;
+			map = new TreeMap<>(runs);
+		}
+	}
+
+	/**
+	 * Removes a single occurrence of the given element, which is contained
+	 * in this bag, and returns it.
+	 */
+	private E poll(E element) {
+		remove(element);
+		return element;
+	}
+
+	/**
+	 * Returns the backing map, which is a tree or a view of a tree.
+	 */
+	private NavigableMap<E, Counter> navigable() {
+		return (NavigableMap<E, Counter>)map;
+	}
+
+	/**
+	 * Returns the bag which owns the backing tree, and keeps the number of
+	 * occurrences and the modification count shared by all of its views.
+	 */
+	TreeBag<E> root() {
+		return this;
+	}
+
+	@Override
+	boolean shares(Collection<?> collection) {
+		return collection instanceof TreeBag && ((TreeBag<?>)collection).root() == root();
+	}
+
+	/**
+	 * Spliterator over the element occurrences, which holds the element
+	 * being traversed and the number of its occurrences still to be returned,
+	 * and takes the next entry from a spliterator over the backing tree.
+	 */
+	private final class TreeSpliterator implements Spliterator<E>, Consumer<Map.Entry<E, Counter>> {
+		//immutable state
+		private final Spliterator<Map.Entry<E, Counter>> wrapee;
+
+		//mutable state
+		private E current;
+		private int countdown = 0;
+		private boolean sized;
+		private long remaining;
+		private int expected;
+
+		//constructors
+		TreeSpliterator(Spliterator<Map.Entry<E, Counter>> wrapee) {
+			//late-binding, the size and the modification count are read on first use
+			this.wrapee = wrapee;
+			this.sized = true;
+			this.remaining = -1;
+		}
+
+		TreeSpliterator(Spliterator<Map.Entry<E, Counter>> wrapee, int expected) {
+			this.wrapee = wrapee;
+			this.sized = false;
+			this.expected = expected;
+		}
+
+		//spliterator behaviour
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			Objects.requireNonNull(action, "Invalid null action.");
+			bind();
+
+			if (countdown == 0 && !wrapee.tryAdvance(this)) {
+				return false;
+			}
+
+			countdown--;
+			remaining--;
+			action.accept(current);
+
+			if (modification != expected) {
+				throw new ConcurrentModificationException();
+			}
+
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			Objects.requireNonNull(action, "Invalid null action.");
+			bind();
+
+			for (; countdown > 0; countdown--) {
+				action.accept(current);
+			}
+
+			wrapee.forEachRemaining(entry -> {
+				E element = entry.getKey();
+
+				for (int count = entry.getValue().getCount(); count > 0; count--) {
+					action.accept(element);
+				}
+			});
+
+			remaining = 0;
+
+			if (modification != expected) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			bind();
+
+			//the pending occurrences precede the entries of the prefix, so it can not be split off
+			Spliterator<Map.Entry<E, Counter>> prefix = (countdown == 0 ? wrapee.trySplit() : null);
+
+			if (prefix == null) {
+				return null;
+			}
+
+			sized = false;
+			return new TreeSpliterator(prefix, expected);
+		}
+
+		@Override
+		public long estimateSize() {
+			bind();
+
+			if (sized) {
+				return remaining;
+			}
+
+			long entries = wrapee.estimateSize();
+			return countdown + (map.isEmpty() ? entries : (long)(entries * ((double)size / map.size())));
+		}
+
+		@Override
+		public int characteristics() {
+			return (sized ? Spliterator.SIZED : 0) | Spliterator.ORDERED | Spliterator.SORTED;
+		}
+
+		@Override
+		public Comparator<? super E> getComparator() {
+			return comparator();
+		}
+
+		//consumer behaviour
+		@Override
+		public void accept(Map.Entry<E, Counter> entry) {
+			current = entry.getKey();
+			countdown = entry.getValue().getCount();
+		}
+
+		//miscellaneous
+		private void bind() {
+			if (sized && remaining < 0) {
+				expected = modification;
+				remaining = size;
+			}
+		}
+	}
+
+	/**
+	 * Sorted map over a list of distinct elements and their counts, appended
+	 * in ascending order, from which a tree map is built in linear time. It
+	 * can not be modified through the map interface, and its ranges are
+	 * views of the list, found by binary search.
+	 */
+	private static final class SortedRuns<E> extends AbstractMap<E, Counter> implements SortedMap<E, Counter> {
+		//immutable state
+		private final Comparator<? super E> comparator;
+		private final List<Map.Entry<E, Counter>> runs;
+
+		//mutable state
+		/**
+		 * The number of occurrences appended, which ranges do not count.
+		 */
+		private long occurrences = 0;
+
+		//constructors
+		SortedRuns(Comparator<? super E> comparator) {
+			this(comparator, new ArrayList<>());
+		}
+
+		private SortedRuns(Comparator<? super E> comparator, List<Map.Entry<E, Counter>> runs) {
+			this.comparator = comparator;
+			this.runs = runs;
+		}
+
+		//sorted runs behaviour
+		/**
+		 * Appends the given amount of occurrences of an element, which must
+		 * not precede the last element appended, merging it with the last
+		 * element if equal.
+		 */
+		void append(E element, int amount) {
+			Map.Entry<E, Counter> last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+			//the first element is compared to itself to check its type, as TreeMap does
+			int order = compare(last == null ? element : last.getKey(), element);
+
+			if (amount <= 0) {
+				throw new IllegalArgumentException("Invalid non-positive amount: " + amount + ".");
+			} else if (order > 0) {
+				throw new IllegalArgumentException("Invalid unsorted element: " + element + ".");
+			} else if (last != null && order == 0) {
+				int count = last.getValue().getCount();
+
+				if (amount > Integer.MAX_VALUE - count) {
+					throw new IllegalArgumentException("Invalid count overflow: " + count + " + " + amount + ".");
+				}
+
+				last.getValue().setCount(count + amount);
+			} else {
+				runs.add(new AbstractMap.SimpleImmutableEntry<>(element, new Counter(amount)));
+			}
+
+			occurrences += amount;
+		}
+
+		//sorted map behaviour
+		@Override
+		public Comparator<? super E> comparator() {
+			return comparator;
+		}
+
+		@Override
+		public Set<Map.Entry<E, Counter>> entrySet() {
+			return new AbstractSet<Map.Entry<E, Counter>>() {
+				@Override
+				public Iterator<Map.Entry<E, Counter>> iterator() {
+					return Collections.unmodifiableList(runs).iterator();
+				}
+
+				@Override
+				public int size() {
+					return runs.size();
+				}
+			};
+		}
+
+		@Override
+		public E firstKey() {
+			return key(0);
+		}
+
+		@Override
+		public E lastKey() {
+			return key(runs.size() - 1);
+		}
+
+		@Override
+		public SortedMap<E, Counter> subMap(E fromKey, E toKey) {
+			if (compare(fromKey, toKey) > 0) {
+				throw new IllegalArgumentException("Invalid range: " + fromKey + " > " + toKey + ".");
+			}
+
+			return range(index(fromKey), index(toKey));
+		}
+
+		@Override
+		public SortedMap<E, Counter> headMap(E toKey) {
+			return range(0, index(toKey));
+		}
+
+		@Override
+		public SortedMap<E, Counter> tailMap(E fromKey) {
+			return range(index(fromKey), runs.size());
+		}
+
+		//miscellaneous
+		private SortedRuns<E> range(int from, int to) {
+			return new SortedRuns<>(comparator, runs.subList(from, to));
+		}
+
+		/**
+		 * Returns the index of the first run whose element does not precede
+		 * the specified element.
+		 */
+		private int index(E element) {
+			int low = 0;
+			int high = runs.size();
+
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+
+				if (compare(runs.get(middle).getKey(), element) < 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+
+			return low;
+		}
+
+		private E key(int index) {
+			if (runs.isEmpty()) {
+				throw new NoSuchElementException("Invalid empty sorted runs.");
+			}
+
+			return runs.get(index).getKey();
+		}
+
+		private int compare(E element, E other) {
+			return (comparator == null)
+				? ((Comparable<? super E>)Objects.requireNonNull(element, "Invalid null element.")).compareTo(other)
+				: comparator.compare(element, other);
+		}
+	}
+
+	/**
+	 * Live view of a range of a tree bag, or of the whole bag in descending
+	 * order, backed by a view of the tree. It records its changes on the
+	 * bag owning the tree, and caches the number of its occurrences along
+	 * with the modification count it was counted at, so that the changes
+	 * made through the view keep it up to date in constant time. It is
+	 * recounted under the monitor of the view, as concurrent readers may
+	 * recount it, for example under the read lock of
+	 * {@link Bags#readWriteLockedBag(Bag)}.
+	 */
+	private static final class View<E> extends TreeBag<E> {
+		//static state
+		private static final long serialVersionUID = -1L;
+
+		//immutable state
+		private final TreeBag<E> parent;
+
+		//mutable state
+		private transient boolean counted = false;
+		private transient int expected;
+
+		//constructors
+		View(TreeBag<E> parent, NavigableMap<E, Counter> map) {
+			super(map);
+			this.parent = parent;
+		}
+
+		//bag behaviour
+		@Override
+		public void clear() {
+			long amount = 0;
+
+			for (Iterator<Counter> iterator = map.values().iterator(); iterator.hasNext();) {
+				amount += iterator.next().getCount();
+				iterator.remove();
+			}
+
+			modify(-amount);
+		}
+
+		//cloneable behaviour
+		/**
+		 * Returns a new tree bag with the elements of this view, in the same
+		 * order, which is not backed by the bag backing this view.
+		 */
+		@Override
+		public Object clone() {
+			return new TreeBag<>((SortedBag<E>)this);
+		}
+
+		//serializable behaviour
+		private Object writeReplace() {
+			return clone();
+		}
+
+		//miscellaneous
+		@Override
+		protected int modify(long amount) {
+			int previous = parent.modification();
+			int result = parent.modify(amount);
+
+			if (counted && expected == previous) {
+				size += amount;
+				expected = result;
+			} else {
+				counted = false;
+			}
+
+			return result;
+		}
+
+		@Override
+		protected int modification() {
+			return parent.modification();
+		}
+
+		@Override
+		synchronized long occurrences() {
+			if (!counted || expected != parent.modification()) {
+				long amount = 0;
+
+				for (Counter counter : map.values()) {
+					amount += counter.getCount();
+				}
+
+				size = amount;
+				expected = parent.modification();
+				counted = true;
+			}
+
+			return size;
+		}
+
+		@Override
+		TreeBag<E> root() {
+			return parent;
+		}
+	}
 }
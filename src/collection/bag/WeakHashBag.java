@@ -30,8 +30,9 @@ public class WeakHashBag<E> extends AbstractMapBag<E> implements Serializable, C
 		Objects.requireNonNull(collection, "Invalid null collection.");
 
 		if (collection instanceof AbstractMapBag) {
-			size = ((AbstractMapBag)collection).size;
+			size = ((AbstractMapBag)collection).occurrences();
 			map = new WeakHashMap<>(((AbstractMapBag)collection).map);
+			detach();
 		} else {
 			map = new WeakHashMap<>(Math.max((int)((collection instanceof Bag ? ((Bag)collection).asEntrySet().size() : collection.size()) / .75f) + 1, 16));
 			addAll(collection);
@@ -55,6 +56,9 @@ public class WeakHashBag<E> extends AbstractMapBag<E> implements Serializable, C
 		try {
 			WeakHashBag<E> clone = (WeakHashBag<E>)super.clone();
 			clone.map = new WeakHashMap<>(map);
+			clone.detach();
+			clone.entries = null;
+			clone.elements = null;
 			return clone;
 		} catch (CloneNotSupportedException exception) {
 			throw new InternalError(exception);